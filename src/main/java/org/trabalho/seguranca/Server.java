@@ -2,13 +2,17 @@ package org.trabalho.seguranca;
 
 import org.trabalho.seguranca.auth.AuthenticationManager;
 import org.trabalho.seguranca.crypto.CryptoManager;
+import org.trabalho.seguranca.crypto.KeyDerivation;
+import org.trabalho.seguranca.storage.DecryptedContentCache;
 import org.trabalho.seguranca.storage.FileStorageManager;
 import org.trabalho.seguranca.storage.UserRepository;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.security.Security;
 import java.util.Scanner;
 
@@ -16,11 +20,14 @@ import java.util.Scanner;
 public class Server {
     
     private static final Scanner scanner = new Scanner(System.in);
+    // tempo alvo de uma derivacao de senha (-Dkdf.target.ms)
+    private static final long KDF_TARGET_MS = Long.getLong("kdf.target.ms", 500);
     private static AuthenticationManager authManager;
     private static CryptoManager cryptoManager;
     private static FileStorageManager fileManager;
     private static String currentUser = null;
     private static byte[] currentUserKey = null;
+    private static DecryptedContentCache contentCache = null;
     
     public static void main(String[] args) {
         // registra provedor bouncycastle
@@ -32,11 +39,15 @@ public class Server {
     
     private static void initializeComponents() {
         try {
+            // ajusta custo do argon2id ao hardware atual
+            KeyDerivation.calibrate(KDF_TARGET_MS);
+            
             UserRepository userRepo = new UserRepository();
             authManager = new AuthenticationManager(userRepo);
             cryptoManager = new CryptoManager();
             fileManager = new FileStorageManager();
         } catch (Exception e) {
+            System.err.println("Erro ao inicializar servidor: " + e.getMessage());
             System.exit(1);
         }
     }
@@ -65,6 +76,13 @@ public class Server {
             }
         }
         
+        try {
+            // fecha segmentos de armazenamento abertos
+            fileManager.close();
+        } catch (Exception e) {
+            System.err.println("Erro ao fechar armazenamento: " + e.getMessage());
+        }
+        
         System.out.println("Você saiu do sistema.");
     }
     
@@ -86,6 +104,8 @@ public class Server {
         System.out.println("│ 2 - Download de arquivo             │");
         System.out.println("│ 3 - Listar meus arquivos           │");
         System.out.println("│ 4 - Remover arquivo                 │");
+        System.out.println("│ 5 - Exportar cofre                  │");
+        System.out.println("│ 6 - Importar cofre                  │");
         System.out.println("│ 0 - Logout                          │");
         System.out.println("└─────────────────────────────────────┘");
     }
@@ -120,6 +140,12 @@ public class Server {
             case "4":
                 removerArquivo();
                 break;
+            case "5":
+                exportarCofre();
+                break;
+            case "6":
+                importarCofre();
+                break;
             case "0":
                 logout();
                 break;
@@ -171,6 +197,7 @@ public class Server {
             
             currentUser = username;
             currentUserKey = userKey;
+            contentCache = new DecryptedContentCache();
             
             System.out.println("Login realizado com sucesso!");            
         } catch (Exception e) {
@@ -197,6 +224,7 @@ public class Server {
             
             String fileName = path.getFileName().toString();
             fileManager.storeFile(currentUser, fileName, encryptedContent);
+            contentCache.invalidate(fileName);
             
             System.out.printf("Arquivo '%s' enviado e criptografado com sucesso!%n", fileName);
             System.out.printf("Tamanho original: %d bytes%n", fileContent.length);
@@ -215,8 +243,13 @@ public class Server {
             
             System.out.println("Baixando e descriptografando arquivo...");
             
-            byte[] encryptedContent = fileManager.retrieveFile(currentUser, fileName);
-            byte[] decryptedContent = cryptoManager.decrypt(encryptedContent, currentUserKey);
+            // reutiliza conteudo ja descriptografado nesta sessao
+            byte[] decryptedContent = contentCache.get(fileName);
+            if (decryptedContent == null) {
+                byte[] encryptedContent = fileManager.retrieveFile(currentUser, fileName);
+                decryptedContent = cryptoManager.decrypt(encryptedContent, currentUserKey);
+                contentCache.put(fileName, decryptedContent);
+            }
             
             System.out.printf("Arquivo '%s' descriptografado com sucesso!%n", fileName);
             
@@ -226,6 +259,8 @@ public class Server {
                 System.out.printf("Arquivo salvo em: %s%n", fileName);
             }
             
+            java.util.Arrays.fill(decryptedContent, (byte) 0);
+            
         } catch (Exception e) {
             System.err.println("Erro no download: " + e.getMessage());
         }
@@ -264,6 +299,7 @@ public class Server {
             }
             
             fileManager.removeFile(currentUser, fileName);
+            contentCache.invalidate(fileName);
             System.out.printf("Arquivo '%s' removido com sucesso!%n", fileName);
             
         } catch (Exception e) {
@@ -271,6 +307,65 @@ public class Server {
         }
     }
     
+    private static void exportarCofre() {
+        try {
+            System.out.println("\nEXPORTAR COFRE");
+            
+            String destino = lerString("Arquivo de destino: ");
+            Path path = Paths.get(destino);
+            
+            if (Files.exists(path)) {
+                System.out.println("Arquivo de destino já existe.");
+                return;
+            }
+            
+            System.out.println("Exportando arquivos criptografados...");
+            
+            // conteudo continua cifrado; nao precisa da chave do usuario
+            int total;
+            FileChannel out = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            try (out) {
+                total = fileManager.exportVault(currentUser, out);
+                out.force(true);
+            } catch (Exception e) {
+                // remove exportacao parcial para nao deixar arquivo truncado
+                Files.deleteIfExists(path);
+                throw e;
+            }
+            
+            System.out.printf("%d arquivo(s) exportado(s) para: %s%n", total, destino);
+            
+        } catch (Exception e) {
+            System.err.println("Erro na exportação: " + e.getMessage());
+        }
+    }
+    
+    private static void importarCofre() {
+        try {
+            System.out.println("\nIMPORTAR COFRE");
+            
+            String origem = lerString("Arquivo exportado: ");
+            Path path = Paths.get(origem);
+            
+            if (!Files.exists(path) || !Files.isReadable(path)) {
+                System.out.println("Arquivo não encontrado.");
+                return;
+            }
+            
+            System.out.println("Importando e verificando arquivos...");
+            
+            int total;
+            try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+                total = fileManager.importVault(currentUser, in);
+            }
+            
+            System.out.printf("%d arquivo(s) importado(s) com sucesso!%n", total);
+            
+        } catch (Exception e) {
+            System.err.println("Erro na importação: " + e.getMessage());
+        }
+    }
+    
     private static void logout() {
         currentUser = null;
         if (currentUserKey != null) {
@@ -278,6 +373,15 @@ public class Server {
             java.util.Arrays.fill(currentUserKey, (byte) 0);
             currentUserKey = null;
         }
+        if (contentCache != null) {
+            System.out.printf("Cache da sessão: %.1f%% de acertos (%d de %d leituras), %d remoção(ões) por espaço%n",
+                    100.0 * contentCache.getHitRate(), contentCache.getHits(),
+                    contentCache.getHits() + contentCache.getMisses(), contentCache.getEvictions());
+            
+            // limpa conteudo descriptografado da memoria
+            contentCache.clear();
+            contentCache = null;
+        }
         System.out.println("Logout realizado com sucesso!");
     }
     
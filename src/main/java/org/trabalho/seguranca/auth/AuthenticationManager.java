@@ -1,18 +1,25 @@
 package org.trabalho.seguranca.auth;
 
+import org.trabalho.seguranca.crypto.CryptoManager;
+import org.trabalho.seguranca.crypto.KdfParameters;
 import org.trabalho.seguranca.crypto.KeyDerivation;
 import org.trabalho.seguranca.storage.UserRepository;
 import org.trabalho.seguranca.storage.User;
 
+import java.security.MessageDigest;
+import java.util.Arrays;
+
 // gerencia autenticacao com senha + totp
 public class AuthenticationManager {
     
     private final UserRepository userRepository;
     private final TOTPManager totpManager;
+    private final CryptoManager cryptoManager;
     
     public AuthenticationManager(UserRepository userRepository) {
         this.userRepository = userRepository;
         this.totpManager = new TOTPManager();
+        this.cryptoManager = new CryptoManager();
     }
     
     // registra usuario com 2fa e retorna caminho do qr code
@@ -30,15 +37,29 @@ public class AuthenticationManager {
             throw new IllegalArgumentException("Senha deve ter pelo menos 4 caracteres");
         }
         
-        // gerar salt e derivar chave da senha
+        // gerar salt e derivar chave da senha com os parametros atuais
+        KdfParameters kdf = KeyDerivation.getCurrentParameters();
         byte[] salt = KeyDerivation.generateSalt();
-        byte[] passwordHash = KeyDerivation.deriveKey(password, salt);
+        byte[] derived = KeyDerivation.deriveKey(password, salt, kdf);
+        
+        // chave dos arquivos aleatoria, gravada apenas cifrada; o verificador e
+        // a chave que a cifra saem da mesma derivacao com rotulos diferentes
+        byte[] fileKey = cryptoManager.generateRandomKey();
+        byte[] passwordHash;
+        byte[] wrappedFileKey;
+        try {
+            passwordHash = KeyDerivation.toVerifier(derived, kdf);
+            wrappedFileKey = wrapFileKey(fileKey, derived);
+        } finally {
+            Arrays.fill(derived, (byte) 0);
+            Arrays.fill(fileKey, (byte) 0);
+        }
         
         // gerar secret totp
         String totpSecret = totpManager.generateSecret();
         
         // salvar usuario
-        userRepository.saveUser(username, salt, passwordHash, totpSecret);
+        userRepository.saveUser(username, salt, passwordHash, totpSecret, kdf, wrappedFileKey);
         
         // gerar qr code para configuracao 2fa
         String qrCodePath = totpManager.generateQRCode(username, totpSecret);
@@ -54,17 +75,78 @@ public class AuthenticationManager {
             throw new SecurityException("Usuário não encontrado");
         }
         
-        // verificar senha (1o fator)
-        if (!KeyDerivation.verifyPassword(password, user.getSalt(), user.getPasswordHash())) {
+        // verificar senha (1o fator) com os parametros gravados no usuario
+        byte[] derived = KeyDerivation.deriveKey(password, user.getSalt(), user.getKdf());
+        byte[] verifier = KeyDerivation.toVerifier(derived, user.getKdf());
+        boolean matches = MessageDigest.isEqual(verifier, user.getPasswordHash());
+        Arrays.fill(verifier, (byte) 0);
+        if (!matches) {
+            Arrays.fill(derived, (byte) 0);
             throw new SecurityException("Senha incorreta");
         }
         
         // verificar codigo totp (2o fator)
         if (!totpManager.verifyCode(user.getTotpSecret(), totpCode)) {
+            Arrays.fill(derived, (byte) 0);
             throw new SecurityException("Código 2FA inválido");
         }
         
-        // derivar chave para criptografia de arquivos
-        return KeyDerivation.deriveKey(password, user.getSalt());
+        // obter chave dos arquivos com a mesma derivacao: uma unica kdf por login
+        byte[] fileKey;
+        try {
+            if (user.getWrappedFileKey() == null) {
+                // usuario legado ainda nao migrado: a chave e a saida do pbkdf2
+                fileKey = derived.clone();
+            } else {
+                fileKey = unwrapFileKey(user.getWrappedFileKey(), derived);
+            }
+        } finally {
+            Arrays.fill(derived, (byte) 0);
+        }
+        
+        // atualiza hash de senha para os parametros atuais
+        if (KeyDerivation.needsRehash(user.getKdf())) {
+            rehashPassword(user, password, fileKey);
+        }
+        
+        return fileKey;
+    }
+    
+    // recalcula hash da senha com os parametros atuais e cifra de novo a mesma
+    // chave dos arquivos, que nao muda para manter o acesso aos arquivos.
+    // falhas nao impedem o login: o hash antigo continua valido
+    private void rehashPassword(User user, String password, byte[] fileKey) {
+        KdfParameters current = KeyDerivation.getCurrentParameters();
+        byte[] derived = null;
+        try {
+            derived = KeyDerivation.deriveKey(password, user.getSalt(), current);
+            byte[] newHash = KeyDerivation.toVerifier(derived, current);
+            byte[] wrappedFileKey = wrapFileKey(fileKey, derived);
+            userRepository.updateUser(user.withPasswordHash(newHash, current, wrappedFileKey));
+        } catch (Exception e) {
+            System.err.println("Aviso: não foi possível atualizar hash da senha: " + e.getMessage());
+        } finally {
+            if (derived != null) {
+                Arrays.fill(derived, (byte) 0);
+            }
+        }
+    }    
+    // cifra a chave dos arquivos com aes-gcm sob chave derivada da senha
+    private byte[] wrapFileKey(byte[] fileKey, byte[] derived) throws Exception {
+        byte[] wrappingKey = KeyDerivation.toWrappingKey(derived);
+        try {
+            return cryptoManager.encrypt(fileKey, wrappingKey);
+        } finally {
+            Arrays.fill(wrappingKey, (byte) 0);
+        }
+    }
+    
+    private byte[] unwrapFileKey(byte[] wrappedFileKey, byte[] derived) throws Exception {
+        byte[] wrappingKey = KeyDerivation.toWrappingKey(derived);
+        try {
+            return cryptoManager.decrypt(wrappedFileKey, wrappingKey);
+        } finally {
+            Arrays.fill(wrappingKey, (byte) 0);
+        }
     }
 }
\ No newline at end of file
@@ -9,11 +9,11 @@ import dev.samstevens.totp.secret.DefaultSecretGenerator;
 import dev.samstevens.totp.secret.SecretGenerator;
 import dev.samstevens.totp.time.SystemTimeProvider;
 import dev.samstevens.totp.time.TimeProvider;
+import org.trabalho.seguranca.storage.StorageConfig;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 
 public class TOTPManager {
     
@@ -53,7 +53,7 @@ public class TOTPManager {
         byte[] qrCodeImage = qrGenerator.generate(data);
         
         // salva qr code em arquivo
-        Path qrCodePath = Paths.get("storage", "qr_" + username + ".png");
+        Path qrCodePath = StorageConfig.getMetaRoot().resolve("qr_" + username + ".png");
         Files.createDirectories(qrCodePath.getParent());
         Files.write(qrCodePath, qrCodeImage);
         
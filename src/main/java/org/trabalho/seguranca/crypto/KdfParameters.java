@@ -0,0 +1,98 @@
+package org.trabalho.seguranca.crypto;
+
+import org.json.JSONObject;
+
+import java.util.Objects;
+
+// parametros versionados da derivacao de chave, gravados junto com cada usuario
+public class KdfParameters {
+    
+    public static final String PBKDF2 = "PBKDF2WithHmacSHA256";
+    public static final String ARGON2ID = "argon2id";
+    
+    // versao 1: pbkdf2 fixo anterior ao registro de parametros; o hash gravado
+    // e a propria chave dos arquivos
+    // versao 2: argon2id com verificador e chave dos arquivos separados
+    public static final int LEGACY_VERSION = 1;
+    public static final int CURRENT_VERSION = 2;
+    
+    private static final int LEGACY_ITERATIONS = 100_000;
+    
+    private final int version;
+    private final String algorithm;
+    private final int iterations;
+    private final int memoryKiB;
+    private final int parallelism;
+    
+    public KdfParameters(int version, String algorithm, int iterations, int memoryKiB, int parallelism) {
+        this.version = version;
+        this.algorithm = algorithm;
+        this.iterations = iterations;
+        this.memoryKiB = memoryKiB;
+        this.parallelism = parallelism;
+    }
+    
+    // parametros de usuarios criados antes do versionamento
+    public static KdfParameters legacy() {
+        return new KdfParameters(LEGACY_VERSION, PBKDF2, LEGACY_ITERATIONS, 0, 1);
+    }
+    
+    public static KdfParameters argon2id(int iterations, int memoryKiB, int parallelism) {
+        return new KdfParameters(CURRENT_VERSION, ARGON2ID, iterations, memoryKiB, parallelism);
+    }
+    
+    public int getVersion() { return version; }
+    public String getAlgorithm() { return algorithm; }
+    public int getIterations() { return iterations; }
+    public int getMemoryKiB() { return memoryKiB; }
+    public int getParallelism() { return parallelism; }
+    
+    // converte para json
+    public JSONObject toJSON() {
+        JSONObject json = new JSONObject();
+        json.put("version", version);
+        json.put("algorithm", algorithm);
+        json.put("iterations", iterations);
+        json.put("memoryKiB", memoryKiB);
+        json.put("parallelism", parallelism);
+        return json;
+    }
+    
+    // cria a partir de json; ausencia indica usuario legado
+    public static KdfParameters fromJSON(JSONObject json) {
+        if (json == null) {
+            return legacy();
+        }
+        
+        return new KdfParameters(
+            json.getInt("version"),
+            json.getString("algorithm"),
+            json.getInt("iterations"),
+            json.optInt("memoryKiB", 0),
+            json.optInt("parallelism", 1)
+        );
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof KdfParameters)) return false;
+        KdfParameters other = (KdfParameters) o;
+        return version == other.version
+            && iterations == other.iterations
+            && memoryKiB == other.memoryKiB
+            && parallelism == other.parallelism
+            && algorithm.equals(other.algorithm);
+    }
+    
+    @Override
+    public int hashCode() {
+        return Objects.hash(version, algorithm, iterations, memoryKiB, parallelism);
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("%s(v%d, t=%d, m=%dKiB, p=%d)",
+            algorithm, version, iterations, memoryKiB, parallelism);
+    }
+}
\ No newline at end of file
@@ -1,22 +1,46 @@
 package org.trabalho.seguranca.crypto;
 
+import org.bouncycastle.crypto.generators.Argon2BytesGenerator;
+import org.bouncycastle.crypto.params.Argon2Parameters;
+
+import javax.crypto.Mac;
 import javax.crypto.SecretKeyFactory;
 import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.spec.InvalidKeySpecException;
 import java.util.Arrays;
 
-// derivacao segura de chaves usando pbkdf2
+// derivacao segura de chaves usando pbkdf2 (legado) ou argon2id
 public class KeyDerivation {
     
-    private static final String PBKDF2_ALGORITHM = "PBKDF2WithHmacSHA256";
     private static final int SALT_LENGTH = 16;
-    private static final int ITERATIONS = 100_000;
     private static final int KEY_LENGTH = 256;
     
+    // rotulos que separam o verificador gravado da chave que cifra a chave dos arquivos
+    private static final String HMAC = "HmacSHA256";
+    private static final String VERIFIER_LABEL = "trabalho-seguranca/verificador-senha";
+    private static final String WRAPPING_KEY_LABEL = "trabalho-seguranca/chave-envelope";
+    
+    // custo de memoria fixo; a calibracao ajusta apenas as iteracoes
+    private static final int ARGON2_MEMORY_KIB = 64 * 1024;
+    private static final int ARGON2_PARALLELISM = 1;
+    private static final int MIN_ITERATIONS = 2;
+    private static final int MAX_ITERATIONS = 64;
+    private static final int DEFAULT_ITERATIONS = 3;
+    
+    // a calibracao oscila entre execucoes; so refaz o hash se o custo gravado
+    // estiver abaixo de 80% do atual
+    private static final double REHASH_TOLERANCE = 0.8;
+    
     private static final SecureRandom secureRandom = new SecureRandom();
     
+    private static volatile KdfParameters currentParameters =
+        KdfParameters.argon2id(DEFAULT_ITERATIONS, ARGON2_MEMORY_KIB, ARGON2_PARALLELISM);
+    
     // gera salt aleatorio
     public static byte[] generateSalt() {
         byte[] salt = new byte[SALT_LENGTH];
@@ -24,19 +48,108 @@ public class KeyDerivation {
         return salt;
     }
     
-    // deriva chave a partir da senha usando pbkdf2
-    public static byte[] deriveKey(String password, byte[] salt) 
+    // parametros usados em novos registros e no rehash apos login
+    public static KdfParameters getCurrentParameters() {
+        return currentParameters;
+    }
+    
+    // verifica se hash foi gerado com parametros desatualizados; nunca troca
+    // por parametros mais fracos em nenhuma dimensao
+    public static boolean needsRehash(KdfParameters parameters) {
+        KdfParameters current = currentParameters;
+        if (parameters.getVersion() != current.getVersion()) {
+            return parameters.getVersion() < current.getVersion();
+        }
+        if (!parameters.getAlgorithm().equals(current.getAlgorithm())) {
+            return false;
+        }
+        
+        boolean weaker = parameters.getIterations() < current.getIterations() * REHASH_TOLERANCE
+            || parameters.getMemoryKiB() < current.getMemoryKiB() * REHASH_TOLERANCE;
+        boolean notStronger = parameters.getIterations() <= current.getIterations()
+            && parameters.getMemoryKiB() <= current.getMemoryKiB();
+        return weaker && notStronger;
+    }
+    
+    // escolhe iteracoes do argon2id que cabem no tempo alvo nesta cpu
+    public static KdfParameters calibrate(long targetMillis)
+            throws NoSuchAlgorithmException, InvalidKeySpecException {
+        
+        KdfParameters probe = KdfParameters.argon2id(1, ARGON2_MEMORY_KIB, ARGON2_PARALLELISM);
+        byte[] salt = generateSalt();
+        
+        // primeira execucao aquece o jit e nao entra na medida
+        deriveKey("calibracao", salt, probe);
+        
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long start = System.nanoTime();
+            deriveKey("calibracao", salt, probe);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        
+        long perIteration = Math.max(1, best / 1_000_000);
+        int iterations = (int) Math.max(MIN_ITERATIONS, Math.min(MAX_ITERATIONS, targetMillis / perIteration));
+        
+        KdfParameters calibrated = KdfParameters.argon2id(iterations, ARGON2_MEMORY_KIB, ARGON2_PARALLELISM);
+        currentParameters = calibrated;
+        return calibrated;
+    }
+    
+    // deriva chave a partir da senha usando os parametros informados
+    public static byte[] deriveKey(String password, byte[] salt, KdfParameters parameters)
+            throws NoSuchAlgorithmException, InvalidKeySpecException {
+        
+        switch (parameters.getAlgorithm()) {
+            case KdfParameters.PBKDF2:
+                return derivePbkdf2(password, salt, parameters);
+            case KdfParameters.ARGON2ID:
+                return deriveArgon2id(password, salt, parameters);
+            default:
+                throw new NoSuchAlgorithmException("KDF não suportada: " + parameters.getAlgorithm());
+        }
+    }
+    
+    // verificador da senha gravado no usuario, a partir da saida da kdf;
+    // usuarios legados gravam a saida direto, que e tambem a chave dos arquivos
+    public static byte[] toVerifier(byte[] derived, KdfParameters parameters)
+            throws NoSuchAlgorithmException {
+        if (parameters.getVersion() == KdfParameters.LEGACY_VERSION) {
+            return derived.clone();
+        }
+        return expand(derived, VERIFIER_LABEL);
+    }
+    
+    // chave aes que cifra a chave dos arquivos gravada no usuario
+    public static byte[] toWrappingKey(byte[] derived) throws NoSuchAlgorithmException {
+        return expand(derived, WRAPPING_KEY_LABEL);
+    }
+    
+    // hkdf-expand (rfc 5869) de um bloco
+    private static byte[] expand(byte[] derived, String label) throws NoSuchAlgorithmException {
+        try {
+            Mac mac = Mac.getInstance(HMAC);
+            mac.init(new SecretKeySpec(derived, HMAC));
+            mac.update(label.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 1);
+            return mac.doFinal();
+        } catch (InvalidKeyException e) {
+            throw new IllegalStateException("Chave HMAC inválida", e);
+        }
+    }
+    
+    private static byte[] derivePbkdf2(String password, byte[] salt, KdfParameters parameters)
             throws NoSuchAlgorithmException, InvalidKeySpecException {
         
         PBEKeySpec spec = new PBEKeySpec(
-            password.toCharArray(), 
-            salt, 
-            ITERATIONS, 
+            password.toCharArray(),
+            salt,
+            parameters.getIterations(),
             KEY_LENGTH
         );
         
         try {
-            SecretKeyFactory factory = SecretKeyFactory.getInstance(PBKDF2_ALGORITHM);
+            SecretKeyFactory factory = SecretKeyFactory.getInstance(KdfParameters.PBKDF2);
             byte[] key = factory.generateSecret(spec).getEncoded();
             return key;
         } finally {
@@ -45,18 +158,26 @@ public class KeyDerivation {
         }
     }
     
-    // verifica se senha corresponde ao hash armazenado
-    public static boolean verifyPassword(String password, byte[] salt, byte[] expectedHash) {
+    private static byte[] deriveArgon2id(String password, byte[] salt, KdfParameters parameters) {
+        Argon2Parameters argon2 = new Argon2Parameters.Builder(Argon2Parameters.ARGON2_id)
+            .withVersion(Argon2Parameters.ARGON2_VERSION_13)
+            .withIterations(parameters.getIterations())
+            .withMemoryAsKB(parameters.getMemoryKiB())
+            .withParallelism(parameters.getParallelism())
+            .withSalt(salt)
+            .build();
+        
+        Argon2BytesGenerator generator = new Argon2BytesGenerator();
+        generator.init(argon2);
+        
+        char[] chars = password.toCharArray();
+        byte[] key = new byte[KEY_LENGTH / 8];
         try {
-            byte[] derivedKey = deriveKey(password, salt);
-            boolean matches = Arrays.equals(derivedKey, expectedHash);
-            
-            // limpa chave derivada da memoria
-            Arrays.fill(derivedKey, (byte) 0);
-            
-            return matches;
-        } catch (Exception e) {
-            return false;
+            generator.generateBytes(chars, key);
+            return key;
+        } finally {
+            // limpa senha da memoria
+            Arrays.fill(chars, '\0');
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,75 @@
+package org.trabalho.seguranca.loadtest;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// histograma log-linear de latencias em microssegundos, sem locks e com
+// memoria fixa; cada potencia de 2 e dividida em 16 faixas (erro < 6,25%)
+public class LatencyHistogram {
+    
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAGNITUDES = 64 - SUB_BUCKET_BITS + 1;
+    
+    private final AtomicLongArray counts = new AtomicLongArray(MAGNITUDES * SUB_BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+    
+    public void record(long micros) {
+        long value = Math.max(0, micros);
+        counts.incrementAndGet(indexOf(value));
+        total.incrementAndGet();
+        sum.addAndGet(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+    
+    public long getCount() {
+        return total.get();
+    }
+    
+    public long getMax() {
+        return max.get();
+    }
+    
+    public double getMean() {
+        long count = total.get();
+        return count == 0 ? 0.0 : (double) sum.get() / count;
+    }
+    
+    // limite superior da faixa que contem o percentil (0-100)
+    public long getPercentile(double percentile) {
+        long count = total.get();
+        if (count == 0) {
+            return 0;
+        }
+        
+        long rank = (long) Math.ceil(count * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+    
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int sub = (int) (value >>> shift) - SUB_BUCKETS;
+        return (shift + 1) * SUB_BUCKETS + sub;
+    }
+    
+    private static long upperBound(int index) {
+        int magnitude = index / SUB_BUCKETS;
+        int sub = index % SUB_BUCKETS;
+        if (magnitude == 0) {
+            return sub;
+        }
+        return ((long) (SUB_BUCKETS + sub + 1) << (magnitude - 1)) - 1;
+    }
+}
\ No newline at end of file
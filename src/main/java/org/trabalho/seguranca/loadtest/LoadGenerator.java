@@ -0,0 +1,424 @@
+package org.trabalho.seguranca.loadtest;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.trabalho.seguranca.auth.AuthenticationManager;
+import org.trabalho.seguranca.auth.TOTPManager;
+import org.trabalho.seguranca.crypto.CryptoManager;
+import org.trabalho.seguranca.crypto.KeyDerivation;
+import org.trabalho.seguranca.storage.FileStorageManager;
+import org.trabalho.seguranca.storage.StorageConfig;
+import org.trabalho.seguranca.storage.UserRepository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// gerador de carga em processo: simula N usuarios concorrentes chamando
+// autenticacao, criptografia e armazenamento diretamente, sem rede
+//
+// uso: java -cp server.jar org.trabalho.seguranca.loadtest.LoadGenerator
+//        --users=8 --duration=30 --mix=signup:1,login:4,upload:30,download:50,list:15
+//        --sizes=1024:60,65536:30,4194304:10 --kdf-target-ms=500 --dir=/tmp/carga
+public class LoadGenerator {
+    
+    private static final String PASSWORD = "senha-de-carga";
+    
+    // operacoes simuladas
+    public enum Operation { SIGNUP, LOGIN, UPLOAD, DOWNLOAD, LIST }
+    
+    private final int users;
+    private final long durationMillis;
+    private final Map<Operation, Integer> mix;
+    private final long[] sizes;
+    private final int[] sizeWeights;
+    private final long seed;
+    
+    private final Map<Operation, LatencyHistogram> latencies = new EnumMap<>(Operation.class);
+    private final Map<Operation, AtomicLong> errors = new EnumMap<>(Operation.class);
+    private final Map<Operation, String> firstErrors = new EnumMap<>(Operation.class);
+    private final AtomicLong bytesUploaded = new AtomicLong();
+    private final AtomicLong bytesDownloaded = new AtomicLong();
+    private final AtomicInteger accountCounter = new AtomicInteger();
+    private final AtomicInteger setupFailures = new AtomicInteger();
+    
+    private UserRepository userRepository;
+    private AuthenticationManager authManager;
+    private CryptoManager cryptoManager;
+    private FileStorageManager fileManager;
+    private TOTPManager totpManager;
+    private byte[] payload;
+    
+    public LoadGenerator(int users, long durationMillis, Map<Operation, Integer> mix,
+                         long[] sizes, int[] sizeWeights, long seed) {
+        this.users = users;
+        this.durationMillis = durationMillis;
+        this.mix = mix;
+        this.sizes = sizes;
+        this.sizeWeights = sizeWeights;
+        this.seed = seed;
+        
+        for (Operation op : Operation.values()) {
+            latencies.put(op, new LatencyHistogram());
+            errors.put(op, new AtomicLong());
+        }
+    }
+    
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        
+        // isola dados da carga do armazenamento real antes de carregar o repositorio
+        boolean temporary = !options.containsKey("dir");
+        Path dir = temporary
+            ? Files.createTempDirectory("carga-")
+            : Paths.get(options.get("dir"));
+        System.setProperty(StorageConfig.ROOTS_PROPERTY, dir.toString());
+        System.setProperty(StorageConfig.META_PROPERTY, dir.toString());
+        
+        Security.addProvider(new BouncyCastleProvider());
+        
+        long kdfTarget = Long.parseLong(options.getOrDefault("kdf-target-ms", "500"));
+        System.out.println("Calibrando KDF: " + KeyDerivation.calibrate(kdfTarget));
+        
+        Map<Operation, Integer> mix = parseMix(options.getOrDefault("mix",
+            "signup:1,login:4,upload:30,download:50,list:15"));
+        Map<Long, Integer> sizeDistribution = parseSizes(options.getOrDefault("sizes",
+            "1024:60,65536:30,4194304:10"));
+        
+        long[] sizes = new long[sizeDistribution.size()];
+        int[] weights = new int[sizeDistribution.size()];
+        int i = 0;
+        for (Map.Entry<Long, Integer> e : sizeDistribution.entrySet()) {
+            sizes[i] = e.getKey();
+            weights[i] = e.getValue();
+            i++;
+        }
+        
+        LoadGenerator generator = new LoadGenerator(
+            Integer.parseInt(options.getOrDefault("users", "8")),
+            Long.parseLong(options.getOrDefault("duration", "30")) * 1000,
+            mix, sizes, weights,
+            Long.parseLong(options.getOrDefault("seed", String.valueOf(System.nanoTime())))
+        );
+        
+        System.out.println("Armazenamento de carga em: " + dir.toAbsolutePath());
+        try {
+            generator.run();
+        } finally {
+            // diretorio temporario so serve para esta execucao
+            if (temporary) {
+                deleteRecursively(dir);
+            }
+        }
+    }
+    
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+    
+    // executa a carga e imprime o relatorio
+    public void run() throws Exception {
+        userRepository = new UserRepository();
+        authManager = new AuthenticationManager(userRepository);
+        cryptoManager = new CryptoManager();
+        fileManager = new FileStorageManager();
+        totpManager = new TOTPManager();
+        
+        // conteudo aleatorio gerado uma vez; uploads usam fatias dele
+        long maxSize = Arrays.stream(sizes).max().orElse(0);
+        payload = new byte[(int) maxSize];
+        new Random(seed).nextBytes(payload);
+        
+        System.out.printf("Simulando %d usuário(s) por %d s...%n", users, durationMillis / 1000);
+        
+        CountDownLatch ready = new CountDownLatch(users);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        long[] deadline = new long[1];
+        
+        for (int i = 0; i < users; i++) {
+            Thread thread = new Thread(() -> {
+                VirtualUser user = new VirtualUser();
+                try {
+                    // cada usuario precisa de conta e sessao antes da carga
+                    user.signup();
+                    user.login();
+                } catch (Exception e) {
+                    setupFailures.incrementAndGet();
+                    System.err.println("Falha ao preparar usuário: " + e.getMessage());
+                    ready.countDown();
+                    return;
+                }
+                ready.countDown();
+                
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                
+                while (System.currentTimeMillis() < deadline[0]) {
+                    user.runOnce();
+                }
+                user.logout();
+            }, "usuario-carga-" + i);
+            threads.add(thread);
+            thread.start();
+        }
+        
+        ready.await();
+        resetStats();
+        
+        long begin = System.nanoTime();
+        deadline[0] = System.currentTimeMillis() + durationMillis;
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double elapsed = (System.nanoTime() - begin) / 1e9;
+        
+        fileManager.close();
+        printReport(elapsed);
+    }
+    
+    // usuario sintetico com sua propria conta e sessao
+    private class VirtualUser {
+        final Random random = new Random(seed ^ Thread.currentThread().getId());
+        final List<String> files = new ArrayList<>();
+        String username;
+        // lido uma vez no preparo para que o login medido nao releia users.json
+        String totpSecret;
+        byte[] key;
+        int nextFile;
+        
+        void runOnce() {
+            Operation op = pick();
+            long start = System.nanoTime();
+            try {
+                switch (op) {
+                    case SIGNUP:
+                        // novas contas entram no sistema, mas a sessao continua a mesma
+                        registerAccount();
+                        break;
+                    case LOGIN:
+                        login();
+                        break;
+                    case UPLOAD:
+                        upload();
+                        break;
+                    case DOWNLOAD:
+                        if (files.isEmpty()) {
+                            op = Operation.UPLOAD;
+                            upload();
+                        } else {
+                            download();
+                        }
+                        break;
+                    case LIST:
+                        fileManager.listUserFiles(username);
+                        break;
+                }
+                latencies.get(op).record((System.nanoTime() - start) / 1000);
+            } catch (Exception e) {
+                recordError(op, e);
+            }
+        }
+        
+        void signup() throws Exception {
+            username = registerAccount();
+            totpSecret = userRepository.findUser(username).getTotpSecret();
+        }
+        
+        String registerAccount() throws Exception {
+            String name = "carga" + accountCounter.incrementAndGet();
+            authManager.registerUser(name, PASSWORD);
+            return name;
+        }
+        
+        void login() throws Exception {
+            byte[] newKey = authManager.authenticateUser(username, PASSWORD, totpManager.getCurrentCode(totpSecret));
+            logout();
+            key = newKey;
+        }
+        
+        void upload() throws Exception {
+            int size = (int) pickSize();
+            byte[] content = Arrays.copyOf(payload, size);
+            
+            // reutiliza alguns nomes para exercitar sobrescrita
+            String fileName = "arquivo-" + (nextFile++ % 32) + ".bin";
+            fileManager.storeFile(username, fileName, cryptoManager.encrypt(content, key));
+            if (!files.contains(fileName)) {
+                files.add(fileName);
+            }
+            bytesUploaded.addAndGet(size);
+        }
+        
+        void download() throws Exception {
+            String fileName = files.get(random.nextInt(files.size()));
+            byte[] content = cryptoManager.decrypt(fileManager.retrieveFile(username, fileName), key);
+            bytesDownloaded.addAndGet(content.length);
+            Arrays.fill(content, (byte) 0);
+        }
+        
+        void logout() {
+            if (key != null) {
+                Arrays.fill(key, (byte) 0);
+                key = null;
+            }
+        }
+        
+        Operation pick() {
+            int total = mix.values().stream().mapToInt(Integer::intValue).sum();
+            int roll = random.nextInt(total);
+            for (Map.Entry<Operation, Integer> e : mix.entrySet()) {
+                roll -= e.getValue();
+                if (roll < 0) {
+                    return e.getKey();
+                }
+            }
+            return Operation.LIST;
+        }
+        
+        long pickSize() {
+            int total = Arrays.stream(sizeWeights).sum();
+            int roll = random.nextInt(total);
+            for (int i = 0; i < sizes.length; i++) {
+                roll -= sizeWeights[i];
+                if (roll < 0) {
+                    // variacao de +-50% em torno do tamanho escolhido
+                    long jitter = sizes[i] / 2;
+                    return sizes[i] - jitter + (long) (random.nextDouble() * 2 * jitter);
+                }
+            }
+            return sizes[sizes.length - 1];
+        }
+    }
+    
+    private void recordError(Operation op, Exception e) {
+        errors.get(op).incrementAndGet();
+        synchronized (firstErrors) {
+            firstErrors.putIfAbsent(op, e.getClass().getSimpleName() + ": " + e.getMessage());
+        }
+    }
+    
+    // descarta cadastro e login iniciais para medir apenas a carga
+    private void resetStats() {
+        for (Operation op : Operation.values()) {
+            latencies.put(op, new LatencyHistogram());
+            errors.get(op).set(0);
+        }
+        synchronized (firstErrors) {
+            firstErrors.clear();
+        }
+    }
+    
+    private void printReport(double elapsed) {
+        long totalOps = 0;
+        long totalErrors = 0;
+        
+        System.out.println();
+        System.out.printf("%-9s %9s %8s %9s %9s %9s %9s %9s %9s %9s%n",
+            "operacao", "ops", "erros", "ops/s", "media ms", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        
+        for (Operation op : Operation.values()) {
+            LatencyHistogram h = latencies.get(op);
+            long count = h.getCount();
+            long errorCount = errors.get(op).get();
+            totalOps += count;
+            totalErrors += errorCount;
+            
+            if (count == 0 && errorCount == 0) {
+                continue;
+            }
+            
+            System.out.printf("%-9s %9d %8d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                op.name().toLowerCase(), count, errorCount, count / elapsed,
+                h.getMean() / 1000.0,
+                h.getPercentile(50) / 1000.0,
+                h.getPercentile(90) / 1000.0,
+                h.getPercentile(99) / 1000.0,
+                h.getPercentile(99.9) / 1000.0,
+                h.getMax() / 1000.0);
+        }
+        
+        long attempts = totalOps + totalErrors;
+        System.out.println();
+        System.out.printf("Duração: %.1f s, usuários ativos: %d de %d%n",
+            elapsed, users - setupFailures.get(), users);
+        System.out.printf("Vazão total: %.1f ops/s%n", totalOps / elapsed);
+        System.out.printf("Taxa de erro: %.2f%%%n", attempts == 0 ? 0.0 : 100.0 * totalErrors / attempts);
+        System.out.printf("Upload: %.2f MB/s, Download: %.2f MB/s%n",
+            bytesUploaded.get() / elapsed / (1024 * 1024),
+            bytesDownloaded.get() / elapsed / (1024 * 1024));
+        
+        for (Map.Entry<Operation, String> e : firstErrors.entrySet()) {
+            System.out.printf("Primeiro erro em %s: %s%n", e.getKey().name().toLowerCase(), e.getValue());
+        }
+    }
+    
+    // le opcoes no formato --chave=valor
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Opção inválida: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        return options;
+    }
+    
+    // ex: signup:1,login:4,upload:30,download:50,list:15
+    private static Map<Operation, Integer> parseMix(String value) {
+        Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+        for (Map.Entry<String, Integer> e : parseWeights(value).entrySet()) {
+            mix.put(Operation.valueOf(e.getKey().toUpperCase()), e.getValue());
+        }
+        return mix;
+    }
+    
+    // ex: 1024:60,65536:30,4194304:10 (bytes:peso)
+    private static Map<Long, Integer> parseSizes(String value) {
+        Map<Long, Integer> sizes = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> e : parseWeights(value).entrySet()) {
+            sizes.put(Long.parseLong(e.getKey()), e.getValue());
+        }
+        return sizes;
+    }
+    
+    private static Map<String, Integer> parseWeights(String value) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String part : value.split(",")) {
+            String[] kv = part.trim().split(":");
+            if (kv.length != 2 || Integer.parseInt(kv[1]) < 0) {
+                throw new IllegalArgumentException("Peso inválido: " + part);
+            }
+            weights.put(kv[0], Integer.parseInt(kv[1]));
+        }
+        if (weights.values().stream().mapToInt(Integer::intValue).sum() <= 0) {
+            throw new IllegalArgumentException("Soma dos pesos deve ser positiva: " + value);
+        }
+        return weights;
+    }
+}
\ No newline at end of file
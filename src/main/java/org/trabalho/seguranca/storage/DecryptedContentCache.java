@@ -0,0 +1,89 @@
+package org.trabalho.seguranca.storage;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// cache lru de conteudo descriptografado de uma sessao, limitado em bytes
+public class DecryptedContentCache {
+    
+    public static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+    
+    private final long maxBytes;
+    private final LinkedHashMap<String, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long currentBytes;
+    
+    private long hits;
+    private long misses;
+    private long evictions;
+    
+    public DecryptedContentCache() {
+        this(DEFAULT_MAX_BYTES);
+    }
+    
+    public DecryptedContentCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+    
+    // retorna copia do conteudo em cache ou null
+    public synchronized byte[] get(String fileName) {
+        byte[] content = entries.get(fileName);
+        if (content == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return content.clone();
+    }
+    
+    // guarda copia do conteudo, removendo os menos usados se exceder o limite
+    public synchronized void put(String fileName, byte[] content) {
+        invalidate(fileName);
+        if (content.length > maxBytes) {
+            return;
+        }
+        
+        entries.put(fileName, content.clone());
+        currentBytes += content.length;
+        
+        Iterator<Map.Entry<String, byte[]>> it = entries.entrySet().iterator();
+        while (currentBytes > maxBytes && it.hasNext()) {
+            byte[] evicted = it.next().getValue();
+            it.remove();
+            currentBytes -= evicted.length;
+            // limpa conteudo descartado da memoria
+            Arrays.fill(evicted, (byte) 0);
+            evictions++;
+        }
+    }
+    
+    // descarta entrada apos upload ou remocao do arquivo
+    public synchronized void invalidate(String fileName) {
+        byte[] content = entries.remove(fileName);
+        if (content != null) {
+            currentBytes -= content.length;
+            Arrays.fill(content, (byte) 0);
+        }
+    }
+    
+    // limpa todo o conteudo da memoria (logout)
+    public synchronized void clear() {
+        for (byte[] content : entries.values()) {
+            Arrays.fill(content, (byte) 0);
+        }
+        entries.clear();
+        currentBytes = 0;
+    }
+    
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+    public synchronized long getEvictions() { return evictions; }
+    public synchronized long getCurrentBytes() { return currentBytes; }
+    
+    // fracao de leituras atendidas pelo cache
+    public synchronized double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,172 @@
+package org.trabalho.seguranca.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+
+// backend com um arquivo .enc por objeto no sistema de arquivos
+public class FileSystemStorageBackend implements StorageBackend {
+    
+    private static final String EXTENSION = ".enc";
+    // escritas em andamento; ignoradas pela listagem por nao terminarem em .enc
+    private static final String TEMP_EXTENSION = ".tmp";
+    
+    private final Path root;
+    
+    public FileSystemStorageBackend(Path root) throws IOException {
+        this.root = root;
+        // cria diretorio de armazenamento se nao existir
+        Files.createDirectories(root);
+    }
+    
+    @Override
+    public void store(String username, String fileName, byte[] content) throws IOException {
+        Path userDir = getUserDirectory(username);
+        Files.createDirectories(userDir);
+        
+        Path temp = Files.createTempFile(userDir, ".", TEMP_EXTENSION);
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(content);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                // chamadores apagam outras copias logo depois; o conteudo precisa estar no disco
+                channel.force(true);
+            }
+            publish(temp, getFilePath(username, fileName));
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+    
+    @Override
+    public void storeFrom(String username, String fileName, ReadableByteChannel source, long length)
+            throws IOException {
+        Path userDir = getUserDirectory(username);
+        Files.createDirectories(userDir);
+        
+        Path temp = Files.createTempFile(userDir, ".", TEMP_EXTENSION);
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                long position = 0;
+                while (position < length) {
+                    long written = channel.transferFrom(source, position, length - position);
+                    if (written <= 0) {
+                        throw new IOException("Fluxo terminou antes do fim do arquivo: " + fileName);
+                    }
+                    position += written;
+                }
+                channel.force(true);
+            }
+            publish(temp, getFilePath(username, fileName));
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+    
+    // troca a versao visivel de uma vez: leitores nunca veem arquivo pela metade
+    // e uma queda durante a escrita preserva a versao anterior
+    private static void publish(Path temp, Path target) throws IOException {
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        try (FileChannel dir = FileChannel.open(target.getParent(), StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            // alguns sistemas nao permitem sincronizar diretorios
+        }
+    }
+    
+    @Override
+    public byte[] retrieve(String username, String fileName) throws IOException {
+        return Files.readAllBytes(requireFile(username, fileName));
+    }
+    
+    @Override
+    public ReadableByteChannel openRead(String username, String fileName) throws IOException {
+        return FileChannel.open(requireFile(username, fileName), StandardOpenOption.READ);
+    }
+    
+    @Override
+    public long size(String username, String fileName) throws IOException {
+        return Files.size(requireFile(username, fileName));
+    }
+    
+    @Override
+    public String[] list(String username) throws IOException {
+        Path userDir = getUserDirectory(username);
+        
+        if (!Files.exists(userDir)) {
+            return new String[0];
+        }
+        
+        try (Stream<Path> files = Files.list(userDir)) {
+            return files
+                .filter(Files::isRegularFile)
+                .map(Path::getFileName)
+                .map(Path::toString)
+                .filter(name -> name.endsWith(EXTENSION))
+                .map(name -> name.substring(0, name.length() - EXTENSION.length()))
+                .toArray(String[]::new);
+        }
+    }
+    
+    @Override
+    public void remove(String username, String fileName) throws IOException {
+        Path filePath = getFilePath(username, fileName);
+        
+        if (!Files.exists(filePath)) {
+            throw new IOException("Arquivo não encontrado: " + fileName);
+        }
+        
+        Files.delete(filePath);
+        
+        // remove diretorio vazio para que o usuario deixe de aparecer em listUsers
+        try (Stream<Path> remaining = Files.list(filePath.getParent())) {
+            if (!remaining.findAny().isPresent()) {
+                Files.delete(filePath.getParent());
+            }
+        }
+    }
+    
+    @Override
+    public boolean exists(String username, String fileName) {
+        return Files.exists(getFilePath(username, fileName));
+    }
+    
+    @Override
+    public String[] listUsers() throws IOException {
+        try (Stream<Path> dirs = Files.list(root)) {
+            return dirs
+                .filter(Files::isDirectory)
+                .map(Path::getFileName)
+                .map(Path::toString)
+                .toArray(String[]::new);
+        }
+    }
+    
+    private Path requireFile(String username, String fileName) throws IOException {
+        Path filePath = getFilePath(username, fileName);
+        
+        if (!Files.exists(filePath)) {
+            throw new IOException("Arquivo não encontrado: " + fileName);
+        }
+        
+        return filePath;
+    }
+    
+    // obtem caminho do arquivo de um objeto
+    private Path getFilePath(String username, String fileName) {
+        return getUserDirectory(username).resolve(fileName + EXTENSION);
+    }
+    
+    // obtem diretorio de um usuario
+    private Path getUserDirectory(String username) {
+        return root.resolve(username);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,694 @@
+package org.trabalho.seguranca.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// backend log-structured: empacota objetos pequenos em segmentos append-only
+// com indice de offsets em memoria; objetos grandes vao para outro backend
+//
+// formato de cada registro no segmento:
+//   seq (long) | tipo (byte) | len usuario (int) | len nome (int) | len dados (int)
+//   | usuario | nome | dados | crc32 (int)
+//
+// escritas sao confirmadas por group commit: o registro e gravado sob o lock
+// e o chamador espera fora dele por um fsync que cobre todos os registros
+// pendentes, entao escritores concorrentes dividem a mesma sincronizacao
+public class SegmentStorageBackend implements StorageBackend {
+    
+    public static final int DEFAULT_INLINE_THRESHOLD = 64 * 1024;
+    public static final long DEFAULT_SEGMENT_SIZE = 64L * 1024 * 1024;
+    
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String COMPACTION_MARKER = "compaction.pending";
+    private static final String LOCK_FILE = "segments.lock";
+    
+    private static final byte RECORD_PUT = 1;
+    private static final byte RECORD_DELETE = 2;
+    
+    private static final int HEADER_LENGTH = 8 + 1 + 4 + 4 + 4;
+    private static final int CRC_LENGTH = 4;
+    
+    // compacta um segmento selado quando mais da metade dos seus bytes estiver morta
+    private static final double COMPACTION_RATIO = 0.5;
+    
+    private static final int KEY_LOCK_STRIPES = 64;
+    
+    private final Path segmentDir;
+    private final StorageBackend largeObjects;
+    private final int inlineThreshold;
+    private final long maxSegmentSize;
+    
+    // impede que outro processo ou instancia grave nos mesmos segmentos
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    
+    private final Map<String, Map<String, Entry>> index = new HashMap<>();
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private Segment active;
+    private long nextSeq = 1;
+    private long nextSegmentId = 1;
+    
+    // serializa escritas da mesma chave; objetos grandes sao gravados com este
+    // lock mas fora do monitor, para nao bloquear os demais objetos
+    private final ReentrantLock[] keyLocks = new ReentrantLock[KEY_LOCK_STRIPES];
+    
+    // maior seq ja sincronizado com o disco; syncLock serializa os fsyncs
+    private final Object syncLock = new Object();
+    private final AtomicLong syncedSeq = new AtomicLong();
+    
+    public SegmentStorageBackend(Path segmentDir, StorageBackend largeObjects) throws IOException {
+        this(segmentDir, largeObjects, DEFAULT_INLINE_THRESHOLD, DEFAULT_SEGMENT_SIZE);
+    }
+    
+    public SegmentStorageBackend(Path segmentDir, StorageBackend largeObjects,
+                                 int inlineThreshold, long maxSegmentSize) throws IOException {
+        this.segmentDir = segmentDir;
+        this.largeObjects = largeObjects;
+        this.inlineThreshold = inlineThreshold;
+        this.maxSegmentSize = maxSegmentSize;
+        
+        for (int i = 0; i < KEY_LOCK_STRIPES; i++) {
+            keyLocks[i] = new ReentrantLock();
+        }
+        
+        Files.createDirectories(segmentDir);
+        
+        this.lockChannel = FileChannel.open(segmentDir.resolve(LOCK_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock acquired;
+        try {
+            acquired = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            acquired = null;
+        }
+        if (acquired == null) {
+            lockChannel.close();
+            throw new IOException("Segmentos já estão em uso por outra instância: " + segmentDir);
+        }
+        this.lock = acquired;
+        
+        try {
+            recover();
+        } catch (IOException e) {
+            releaseLock();
+            throw e;
+        }
+        syncedSeq.set(nextSeq - 1);
+    }
+    
+    @Override
+    public void store(String username, String fileName, byte[] content) throws IOException {
+        ReentrantLock lock = lockFor(username, fileName);
+        lock.lock();
+        try {
+            long seq;
+            if (content.length > inlineThreshold) {
+                // objeto grande: arquivo proprio gravado fora do monitor,
+                // depois descarta versao empacotada
+                largeObjects.store(username, fileName, content);
+                seq = discardPacked(username, fileName);
+            } else {
+                seq = storePacked(username, fileName, content);
+            }
+            awaitDurable(seq);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Override
+    public void storeFrom(String username, String fileName, ReadableByteChannel source, long length)
+            throws IOException {
+        if (length <= inlineThreshold) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) length);
+            while (buffer.hasRemaining()) {
+                if (source.read(buffer) < 0) {
+                    throw new IOException("Fluxo terminou antes do fim do arquivo: " + fileName);
+                }
+            }
+            store(username, fileName, buffer.array());
+            return;
+        }
+        
+        ReentrantLock lock = lockFor(username, fileName);
+        lock.lock();
+        try {
+            largeObjects.storeFrom(username, fileName, source, length);
+            awaitDurable(discardPacked(username, fileName));
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Override
+    public synchronized byte[] retrieve(String username, String fileName) throws IOException {
+        Entry entry = lookup(username, fileName);
+        if (entry == null) {
+            return largeObjects.retrieve(username, fileName);
+        }
+        
+        ByteBuffer buffer = ByteBuffer.allocate(entry.dataLength);
+        readFully(segments.get(entry.segmentId).channel, buffer, entry.dataOffset());
+        return buffer.array();
+    }
+    
+    @Override
+    public ReadableByteChannel openRead(String username, String fileName) throws IOException {
+        synchronized (this) {
+            if (lookup(username, fileName) != null) {
+                // objetos empacotados sao pequenos; a copia mantem o canal
+                // valido mesmo se o segmento for compactado
+                return Channels.newChannel(new ByteArrayInputStream(retrieve(username, fileName)));
+            }
+        }
+        return largeObjects.openRead(username, fileName);
+    }
+    
+    @Override
+    public synchronized long size(String username, String fileName) throws IOException {
+        Entry entry = lookup(username, fileName);
+        return entry != null ? entry.dataLength : largeObjects.size(username, fileName);
+    }
+    
+    @Override
+    public synchronized String[] list(String username) throws IOException {
+        Set<String> names = new TreeSet<>();
+        Map<String, Entry> userIndex = index.get(username);
+        if (userIndex != null) {
+            names.addAll(userIndex.keySet());
+        }
+        for (String name : largeObjects.list(username)) {
+            names.add(name);
+        }
+        return names.toArray(new String[0]);
+    }
+    
+    @Override
+    public void remove(String username, String fileName) throws IOException {
+        ReentrantLock lock = lockFor(username, fileName);
+        lock.lock();
+        try {
+            long seq;
+            synchronized (this) {
+                if (lookup(username, fileName) == null) {
+                    largeObjects.remove(username, fileName);
+                    return;
+                }
+                
+                seq = append(RECORD_DELETE, username, fileName, new byte[0]).seq;
+                markDead(username, fileName, removeEntry(username, fileName));
+                maybeCompact();
+            }
+            awaitDurable(seq);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Override
+    public synchronized boolean exists(String username, String fileName) {
+        return lookup(username, fileName) != null || largeObjects.exists(username, fileName);
+    }
+    
+    @Override
+    public synchronized String[] listUsers() throws IOException {
+        Set<String> users = new TreeSet<>(index.keySet());
+        for (String user : largeObjects.listUsers()) {
+            users.add(user);
+        }
+        return users.toArray(new String[0]);
+    }
+    
+    @Override
+    public synchronized void close() throws IOException {
+        if (active != null && active.channel.isOpen()) {
+            forceActive();
+        }
+        for (Segment segment : segments.values()) {
+            segment.channel.close();
+        }
+        segments.clear();
+        index.clear();
+        largeObjects.close();
+        releaseLock();
+    }
+    
+    private void releaseLock() throws IOException {
+        if (lock.isValid()) {
+            lock.release();
+        }
+        lockChannel.close();
+    }
+    
+    // grava objeto pequeno no segmento ativo e retorna o seq do registro
+    private synchronized long storePacked(String username, String fileName, byte[] content)
+            throws IOException {
+        Entry entry = append(RECORD_PUT, username, fileName, content);
+        Entry previous = index.computeIfAbsent(username, u -> new HashMap<>()).put(fileName, entry);
+        if (previous != null) {
+            markDead(username, fileName, previous);
+        }
+        
+        // a versao grande so pode sumir depois que a nova estiver no disco
+        if (largeObjects.exists(username, fileName)) {
+            forceActive();
+            largeObjects.remove(username, fileName);
+        }
+        maybeCompact();
+        return entry.seq;
+    }
+    
+    // descarta versao empacotada apos gravar o objeto no backend de grandes;
+    // retorna o seq da remocao ou 0 se nao havia versao empacotada
+    private synchronized long discardPacked(String username, String fileName) throws IOException {
+        if (lookup(username, fileName) == null) {
+            return 0;
+        }
+        
+        long seq = append(RECORD_DELETE, username, fileName, new byte[0]).seq;
+        markDead(username, fileName, removeEntry(username, fileName));
+        maybeCompact();
+        return seq;
+    }
+    
+    // espera ate o registro estar no disco; quem chega enquanto outro fsync
+    // esta em andamento aproveita o proximo e normalmente ja o encontra coberto
+    private void awaitDurable(long seq) throws IOException {
+        synchronized (syncLock) {
+            if (syncedSeq.get() >= seq) {
+                return;
+            }
+            
+            // segmentos anteriores ja foram sincronizados ao serem selados
+            long upTo;
+            FileChannel channel;
+            synchronized (this) {
+                upTo = nextSeq - 1;
+                channel = active.channel;
+            }
+            try {
+                channel.force(false);
+            } catch (ClosedChannelException e) {
+                // segmento foi selado (e sincronizado) e depois compactado, ou o
+                // backend foi fechado, o que tambem sincroniza o segmento ativo
+            }
+            syncedSeq.accumulateAndGet(upTo, Math::max);
+        }
+    }
+    
+    // sincroniza o segmento ativo dentro do lock, antes de apagar dados que
+    // ele substitui; segmentos selados ja foram sincronizados em roll()
+    private void forceActive() throws IOException {
+        long upTo = nextSeq - 1;
+        active.channel.force(false);
+        syncedSeq.accumulateAndGet(upTo, Math::max);
+    }
+    
+    // reconstroi indice lendo todos os segmentos
+    private void recover() throws IOException {
+        finishPendingCompaction();
+        
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(segmentDir)) {
+            files = stream
+                .filter(p -> p.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                .filter(p -> p.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                .collect(Collectors.toList());
+        }
+        
+        for (Path file : files) {
+            long id = parseSegmentId(file);
+            segments.put(id, openSegment(id, file));
+            nextSegmentId = Math.max(nextSegmentId, id + 1);
+        }
+        
+        // remocoes podem aparecer antes das escritas que anulam (segmentos compactados)
+        Map<String, Long> tombstones = new HashMap<>();
+        for (Segment segment : segments.values()) {
+            scanSegment(segment, tombstones);
+        }
+        
+        Segment last = segments.isEmpty() ? null : segments.lastEntry().getValue();
+        active = (last != null && last.size < maxSegmentSize) ? last : createSegment();
+    }
+    
+    // le registros de um segmento, truncando cauda incompleta ou corrompida
+    private void scanSegment(Segment segment, Map<String, Long> tombstones) throws IOException {
+        long fileSize = segment.channel.size();
+        long offset = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        
+        while (offset + HEADER_LENGTH + CRC_LENGTH <= fileSize) {
+            header.clear();
+            readFully(segment.channel, header, offset);
+            header.flip();
+            
+            long seq = header.getLong();
+            byte type = header.get();
+            int userLength = header.getInt();
+            int nameLength = header.getInt();
+            int dataLength = header.getInt();
+            
+            long recordLength = (long) HEADER_LENGTH + userLength + nameLength + dataLength + CRC_LENGTH;
+            if (userLength < 0 || nameLength < 0 || dataLength < 0 || offset + recordLength > fileSize) {
+                break;
+            }
+            
+            ByteBuffer record = ByteBuffer.allocate((int) recordLength);
+            readFully(segment.channel, record, offset);
+            byte[] bytes = record.array();
+            
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 0, bytes.length - CRC_LENGTH);
+            if ((int) crc.getValue() != ByteBuffer.wrap(bytes, bytes.length - CRC_LENGTH, CRC_LENGTH).getInt()) {
+                break;
+            }
+            
+            String username = new String(bytes, HEADER_LENGTH, userLength, StandardCharsets.UTF_8);
+            String fileName = new String(bytes, HEADER_LENGTH + userLength, nameLength, StandardCharsets.UTF_8);
+            String key = username + '\0' + fileName;
+            
+            Entry current = lookup(username, fileName);
+            long deletedAt = tombstones.getOrDefault(key, 0L);
+            
+            if (type == RECORD_PUT && seq > deletedAt && (current == null || current.seq < seq)) {
+                Entry entry = new Entry(segment.id, offset, userLength + nameLength, dataLength, seq);
+                index.computeIfAbsent(username, u -> new HashMap<>()).put(fileName, entry);
+                if (current != null) {
+                    markDead(username, fileName, current);
+                }
+            } else if (type == RECORD_DELETE) {
+                tombstones.put(key, Math.max(deletedAt, seq));
+                segment.deadBytes += recordLength;
+                if (current != null && current.seq < seq) {
+                    markDead(username, fileName, removeEntry(username, fileName));
+                }
+            } else {
+                segment.deadBytes += recordLength;
+                if (type == RECORD_PUT) {
+                    segment.deadKeys.add(key);
+                }
+            }
+            
+            nextSeq = Math.max(nextSeq, seq + 1);
+            offset += recordLength;
+        }
+        
+        if (offset < fileSize) {
+            segment.channel.truncate(offset);
+        }
+        segment.size = offset;
+    }
+    
+    // grava registro no segmento ativo; a sincronizacao fica para awaitDurable
+    private Entry append(byte type, String username, String fileName, byte[] data) throws IOException {
+        byte[] user = username.getBytes(StandardCharsets.UTF_8);
+        byte[] name = fileName.getBytes(StandardCharsets.UTF_8);
+        int recordLength = HEADER_LENGTH + user.length + name.length + data.length + CRC_LENGTH;
+        
+        if (active.size > 0 && active.size + recordLength > maxSegmentSize) {
+            roll();
+        }
+        
+        long seq = nextSeq++;
+        ByteBuffer buffer = ByteBuffer.allocate(recordLength);
+        buffer.putLong(seq)
+              .put(type)
+              .putInt(user.length)
+              .putInt(name.length)
+              .putInt(data.length)
+              .put(user)
+              .put(name)
+              .put(data);
+        
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, recordLength - CRC_LENGTH);
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+        
+        long offset = active.size;
+        writeFully(active.channel, buffer, offset);
+        active.size += recordLength;
+        
+        if (type == RECORD_DELETE) {
+            active.deadBytes += recordLength;
+        }
+        return new Entry(active.id, offset, user.length + name.length, data.length, seq);
+    }
+    
+    // escolhe um unico segmento selado com muitos bytes mortos, limitando o
+    // tempo de cada compactacao ao tamanho de um segmento
+    private void maybeCompact() throws IOException {
+        for (Segment segment : segments.values()) {
+            if (segment != active && segment.size > 0
+                    && segment.deadBytes > segment.size * COMPACTION_RATIO) {
+                compactSegment(segment);
+                return;
+            }
+        }
+    }
+    
+    // copia registros vivos do segmento para o segmento ativo e apaga o original;
+    // remocoes so sao copiadas se ainda houver escrita anulada em outro segmento
+    private void compactSegment(Segment segment) throws IOException {
+        Map<Entry, Entry> moved = new HashMap<>();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        long offset = 0;
+        
+        while (offset < segment.size) {
+            header.clear();
+            readFully(segment.channel, header, offset);
+            header.flip();
+            
+            header.getLong();
+            byte type = header.get();
+            int userLength = header.getInt();
+            int nameLength = header.getInt();
+            int dataLength = header.getInt();
+            long length = (long) HEADER_LENGTH + userLength + nameLength + dataLength + CRC_LENGTH;
+            
+            ByteBuffer key = ByteBuffer.allocate(userLength + nameLength);
+            readFully(segment.channel, key, offset + HEADER_LENGTH);
+            String username = new String(key.array(), 0, userLength, StandardCharsets.UTF_8);
+            String fileName = new String(key.array(), userLength, nameLength, StandardCharsets.UTF_8);
+            
+            Entry current = lookup(username, fileName);
+            boolean live = type == RECORD_PUT && current != null
+                    && current.segmentId == segment.id && current.offset == offset;
+            boolean needed = type == RECORD_DELETE && isShadowed(username + '\0' + fileName, segment);
+            
+            if (live || needed) {
+                if (active.size > 0 && active.size + length > maxSegmentSize) {
+                    roll();
+                }
+                
+                // copia registro intacto (seq e crc preservados) sem passar pelo heap;
+                // as escritas normais sao posicionais, entao posiciona o destino
+                active.channel.position(active.size);
+                long copied = 0;
+                while (copied < length) {
+                    copied += segment.channel.transferTo(offset + copied, length - copied, active.channel);
+                }
+                
+                if (live) {
+                    moved.put(current, new Entry(active.id, active.size, current.keyLength,
+                            current.dataLength, current.seq));
+                } else {
+                    active.deadBytes += length;
+                }
+                active.size += length;
+            }
+            offset += length;
+        }
+        
+        // as copias e os registros que anulam versoes deste segmento precisam
+        // estar no disco antes de ele ser apagado
+        forceActive();
+        
+        // marca o segmento para remocao antes de apagar, para que uma
+        // queda no meio nao deixe registros duplicados
+        Path marker = segmentDir.resolve(COMPACTION_MARKER);
+        try (FileChannel channel = FileChannel.open(marker, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(channel, ByteBuffer.wrap(String.valueOf(segment.id).getBytes(StandardCharsets.UTF_8)), 0);
+            channel.force(true);
+        }
+        
+        for (Map<String, Entry> userIndex : index.values()) {
+            for (Map.Entry<String, Entry> e : userIndex.entrySet()) {
+                Entry replacement = moved.get(e.getValue());
+                if (replacement != null) {
+                    e.setValue(replacement);
+                }
+            }
+        }
+        
+        segments.remove(segment.id);
+        segment.channel.close();
+        Files.deleteIfExists(segment.path);
+        Files.delete(marker);
+    }
+    
+    // indica se outro segmento ainda guarda uma escrita anulada da chave
+    private boolean isShadowed(String key, Segment except) {
+        for (Segment segment : segments.values()) {
+            if (segment != except && segment.deadKeys.contains(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    // conclui compactacao interrompida apagando os segmentos ja copiados
+    private void finishPendingCompaction() throws IOException {
+        Path marker = segmentDir.resolve(COMPACTION_MARKER);
+        if (!Files.exists(marker)) {
+            return;
+        }
+        
+        String content = new String(Files.readAllBytes(marker), StandardCharsets.UTF_8);
+        for (String line : content.split("\n")) {
+            if (!line.trim().isEmpty()) {
+                Files.deleteIfExists(segmentPath(Long.parseLong(line.trim())));
+            }
+        }
+        Files.delete(marker);
+    }
+    
+    // sela o segmento ativo sincronizando seus registros pendentes
+    private void roll() throws IOException {
+        active.channel.force(false);
+        active = createSegment();
+    }
+    
+    private Segment createSegment() throws IOException {
+        long id = nextSegmentId++;
+        Segment segment = openSegment(id, segmentPath(id));
+        segments.put(id, segment);
+        return segment;
+    }
+    
+    private Segment openSegment(long id, Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new Segment(id, path, channel, channel.size());
+    }
+    
+    private Path segmentPath(long id) {
+        return segmentDir.resolve(String.format("%s%012d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+    }
+    
+    private long parseSegmentId(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+    
+    private ReentrantLock lockFor(String username, String fileName) {
+        return keyLocks[Math.floorMod((username + '\0' + fileName).hashCode(), KEY_LOCK_STRIPES)];
+    }
+    
+    private Entry lookup(String username, String fileName) {
+        Map<String, Entry> userIndex = index.get(username);
+        return userIndex == null ? null : userIndex.get(fileName);
+    }
+    
+    private Entry removeEntry(String username, String fileName) {
+        Map<String, Entry> userIndex = index.get(username);
+        Entry entry = userIndex.remove(fileName);
+        if (userIndex.isEmpty()) {
+            index.remove(username);
+        }
+        return entry;
+    }
+    
+    private void markDead(String username, String fileName, Entry entry) {
+        Segment segment = segments.get(entry.segmentId);
+        if (segment != null) {
+            segment.deadBytes += entry.recordLength();
+            segment.deadKeys.add(username + '\0' + fileName);
+        }
+    }
+    
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Segmento truncado");
+            }
+        }
+    }
+    
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+    
+    // arquivo de segmento aberto
+    private static class Segment {
+        final long id;
+        final Path path;
+        final FileChannel channel;
+        long size;
+        long deadBytes;
+        
+        // chaves com escritas anuladas neste segmento
+        final Set<String> deadKeys = new HashSet<>();
+        
+        Segment(long id, Path path, FileChannel channel, long size) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+            this.size = size;
+        }
+    }
+    
+    // posicao de um registro vivo dentro de um segmento
+    private static class Entry {
+        final long segmentId;
+        final long offset;
+        final int keyLength;
+        final int dataLength;
+        final long seq;
+        
+        Entry(long segmentId, long offset, int keyLength, int dataLength, long seq) {
+            this.segmentId = segmentId;
+            this.offset = offset;
+            this.keyLength = keyLength;
+            this.dataLength = dataLength;
+            this.seq = seq;
+        }
+        
+        long dataOffset() {
+            return offset + HEADER_LENGTH + keyLength;
+        }
+        
+        long recordLength() {
+            return (long) HEADER_LENGTH + keyLength + dataLength + CRC_LENGTH;
+        }
+    }
+}
\ No newline at end of file
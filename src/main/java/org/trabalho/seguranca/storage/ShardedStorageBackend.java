@@ -0,0 +1,523 @@
+package org.trabalho.seguranca.storage;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// distribui usuarios entre varias raizes de armazenamento com hash consistente;
+// cada usuario fica inteiro em uma raiz para que a listagem continue local
+//
+// ao adicionar ou remover raizes um rebalanceador em segundo plano move os
+// objetos para o novo dono; leituras consultam o dono e depois as demais raizes
+public class ShardedStorageBackend implements StorageBackend {
+    
+    private static final int VIRTUAL_NODES = 128;
+    private static final int LOCK_STRIPES = 64;
+    // raizes ativas do ultimo rebalanceamento completo, gravado em cada raiz
+    private static final String RING_FILE = "ring.conf";
+    
+    private final Map<Path, StorageBackend> shards = new LinkedHashMap<>();
+    private final Set<Path> draining = new TreeSet<>();
+    private volatile TreeMap<Long, Path> ring = new TreeMap<>();
+    
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+    private final Condition[] moveFinished = new Condition[LOCK_STRIPES];
+    // objetos sendo copiados pelo rebalanceador; escritas nessas chaves esperam
+    private final Set<String> moving = ConcurrentHashMap.newKeySet();
+    private final ExecutorService rebalancer;
+    private volatile Future<?> pendingRebalance;
+    
+    public ShardedStorageBackend(List<Path> roots, List<Path> drainingRoots) throws IOException {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+            moveFinished[i] = locks[i].newCondition();
+        }
+        
+        this.rebalancer = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "storage-rebalancer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        
+        for (Path root : roots) {
+            shards.put(root, openShard(root));
+        }
+        for (Path root : drainingRoots) {
+            if (!shards.containsKey(root)) {
+                shards.put(root, openShard(root));
+                draining.add(root);
+            }
+        }
+        
+        rebuildRing();
+        // corrige posicionamento apos mudanca de configuracao entre execucoes;
+        // sem mudanca todos os objetos ja estao no dono e a varredura e evitada
+        if (!draining.isEmpty() || !ringUnchanged()) {
+            scheduleRebalance();
+        }
+    }
+    
+    // abre raiz com arquivos pequenos em segmentos e grandes em arquivos proprios
+    public static StorageBackend openShard(Path root) throws IOException {
+        return new SegmentStorageBackend(root.resolve("segments"),
+                                         new FileSystemStorageBackend(root.resolve("files")));
+    }
+    
+    // adiciona raiz e move para ela os usuarios que passam a pertencer a ela
+    public synchronized void addRoot(Path root) throws IOException {
+        if (shards.containsKey(root) && !draining.contains(root)) {
+            return;
+        }
+        
+        if (!shards.containsKey(root)) {
+            shards.put(root, openShard(root));
+        }
+        draining.remove(root);
+        rebuildRing();
+        scheduleRebalance();
+    }
+    
+    // tira raiz do anel; ela continua legivel ate ser esvaziada
+    public synchronized void removeRoot(Path root) {
+        if (!shards.containsKey(root) || draining.contains(root)) {
+            return;
+        }
+        
+        if (shards.size() - draining.size() <= 1) {
+            throw new IllegalStateException("Não é possível remover a última raiz de armazenamento");
+        }
+        
+        draining.add(root);
+        rebuildRing();
+        scheduleRebalance();
+    }
+    
+    // aguarda rebalanceamento em andamento terminar
+    public void awaitRebalance() throws Exception {
+        Future<?> pending = pendingRebalance;
+        if (pending != null) {
+            pending.get();
+        }
+    }
+    
+    @Override
+    public void store(String username, String fileName, byte[] content) throws IOException {
+        ReentrantLock lock = lockFor(username);
+        lock.lock();
+        try {
+            awaitMove(username, fileName);
+            Path owner = ownerOf(username);
+            shard(owner).store(username, fileName, content);
+            discardStaleCopies(owner, username, fileName);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Override
+    public void storeFrom(String username, String fileName, ReadableByteChannel source, long length)
+            throws IOException {
+        ReentrantLock lock = lockFor(username);
+        lock.lock();
+        try {
+            awaitMove(username, fileName);
+            Path owner = ownerOf(username);
+            shard(owner).storeFrom(username, fileName, source, length);
+            discardStaleCopies(owner, username, fileName);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Override
+    public byte[] retrieve(String username, String fileName) throws IOException {
+        ReentrantLock lock = lockFor(username);
+        lock.lock();
+        try {
+            return locate(username, fileName).retrieve(username, fileName);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Override
+    public ReadableByteChannel openRead(String username, String fileName) throws IOException {
+        ReentrantLock lock = lockFor(username);
+        lock.lock();
+        try {
+            return locate(username, fileName).openRead(username, fileName);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Override
+    public long size(String username, String fileName) throws IOException {
+        ReentrantLock lock = lockFor(username);
+        lock.lock();
+        try {
+            return locate(username, fileName).size(username, fileName);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Override
+    public String[] list(String username) throws IOException {
+        ReentrantLock lock = lockFor(username);
+        lock.lock();
+        try {
+            Set<String> names = new TreeSet<>();
+            for (StorageBackend shard : snapshot().values()) {
+                for (String name : shard.list(username)) {
+                    names.add(name);
+                }
+            }
+            return names.toArray(new String[0]);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Override
+    public void remove(String username, String fileName) throws IOException {
+        ReentrantLock lock = lockFor(username);
+        lock.lock();
+        try {
+            awaitMove(username, fileName);
+            boolean removed = false;
+            for (StorageBackend shard : snapshot().values()) {
+                if (shard.exists(username, fileName)) {
+                    shard.remove(username, fileName);
+                    removed = true;
+                }
+            }
+            
+            if (!removed) {
+                throw new IOException("Arquivo não encontrado: " + fileName);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Override
+    public boolean exists(String username, String fileName) {
+        ReentrantLock lock = lockFor(username);
+        lock.lock();
+        try {
+            for (StorageBackend shard : snapshot().values()) {
+                if (shard.exists(username, fileName)) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Override
+    public String[] listUsers() throws IOException {
+        Set<String> users = new TreeSet<>();
+        for (StorageBackend shard : snapshot().values()) {
+            for (String user : shard.listUsers()) {
+                users.add(user);
+            }
+        }
+        return users.toArray(new String[0]);
+    }
+    
+    @Override
+    public void close() throws IOException {
+        rebalancer.shutdown();
+        try {
+            rebalancer.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        
+        for (StorageBackend shard : snapshot().values()) {
+            shard.close();
+        }
+    }
+    
+    private synchronized void scheduleRebalance() {
+        pendingRebalance = rebalancer.submit(this::rebalance);
+    }
+    
+    // move cada objeto que esta fora da raiz dona do seu usuario
+    private void rebalance() {
+        // descarta configuracao gravada antes de mover: uma queda no meio
+        // obriga a refazer a varredura na proxima inicializacao
+        String description = ringDescription();
+        clearRingState();
+        
+        boolean complete = true;
+        for (Map.Entry<Path, StorageBackend> e : snapshot().entrySet()) {
+            Path root = e.getKey();
+            StorageBackend source = e.getValue();
+            
+            try {
+                for (String username : source.listUsers()) {
+                    for (String fileName : source.list(username)) {
+                        moveIfMisplaced(root, source, username, fileName);
+                    }
+                }
+            } catch (IOException ex) {
+                System.err.println("Erro ao rebalancear " + root + ": " + ex.getMessage());
+                complete = false;
+                continue;
+            }
+            
+            detachIfDrained(root, source);
+        }
+        
+        if (complete && description.equals(ringDescription()) && !hasDraining()) {
+            saveRingState(description);
+        }
+    }
+    
+    // raizes ativas em ordem estavel
+    private synchronized String ringDescription() {
+        Set<String> active = new TreeSet<>();
+        for (Path root : shards.keySet()) {
+            if (!draining.contains(root)) {
+                active.add(root.toAbsolutePath().normalize().toString());
+            }
+        }
+        return String.join("\n", active);
+    }
+    
+    private synchronized boolean hasDraining() {
+        return !draining.isEmpty();
+    }
+    
+    // configuracao so e considerada igual se todas as raizes gravaram a mesma
+    private boolean ringUnchanged() {
+        String expected = ringDescription();
+        for (Path root : snapshot().keySet()) {
+            Path file = root.resolve(RING_FILE);
+            try {
+                if (!Files.exists(file)
+                        || !new String(Files.readAllBytes(file), StandardCharsets.UTF_8).equals(expected)) {
+                    return false;
+                }
+            } catch (IOException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private void clearRingState() {
+        for (Path root : snapshot().keySet()) {
+            try {
+                Files.deleteIfExists(root.resolve(RING_FILE));
+            } catch (IOException e) {
+                System.err.println("Erro ao limpar configuração de " + root + ": " + e.getMessage());
+            }
+        }
+    }
+    
+    private void saveRingState(String description) {
+        for (Path root : snapshot().keySet()) {
+            Path file = root.resolve(RING_FILE);
+            Path temp = root.resolve(RING_FILE + ".tmp");
+            try {
+                Files.write(temp, description.getBytes(StandardCharsets.UTF_8));
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                System.err.println("Erro ao gravar configuração de " + root + ": " + e.getMessage());
+            }
+        }
+    }
+    
+    // copia fora do lock para nao travar leituras do usuario (e dos demais
+    // usuarios da mesma faixa) durante objetos grandes; o lock so e usado para
+    // conferir a origem e apagar a copia antiga
+    private void moveIfMisplaced(Path root, StorageBackend source, String username, String fileName)
+            throws IOException {
+        Path owner = ownerOf(username);
+        if (owner.equals(root)) {
+            return;
+        }
+        StorageBackend target = shard(owner);
+        String key = moveKey(username, fileName);
+        
+        ReentrantLock lock = lockFor(username);
+        long size;
+        lock.lock();
+        try {
+            if (!source.exists(username, fileName)) {
+                return;
+            }
+            // se o dono ja tem o arquivo ele e mais novo
+            if (target.exists(username, fileName)) {
+                source.remove(username, fileName);
+                return;
+            }
+            size = source.size(username, fileName);
+            moving.add(key);
+        } finally {
+            lock.unlock();
+        }
+        
+        boolean copied = false;
+        try {
+            // os backends publicam a copia de uma vez e ja sincronizada; ate la
+            // as leituras continuam encontrando o objeto na origem
+            try (ReadableByteChannel in = source.openRead(username, fileName)) {
+                target.storeFrom(username, fileName, in, size);
+            }
+            copied = true;
+        } finally {
+            lock.lock();
+            try {
+                if (copied) {
+                    if (source.exists(username, fileName) && source.size(username, fileName) == size) {
+                        source.remove(username, fileName);
+                    } else {
+                        // origem mudou durante a copia: a copia esta desatualizada
+                        target.remove(username, fileName);
+                    }
+                }
+            } finally {
+                moving.remove(key);
+                moveFinished[stripeOf(username)].signalAll();
+                lock.unlock();
+            }
+        }
+    }
+    
+    // espera o rebalanceador terminar de mover a chave; chamado com o lock da faixa
+    private void awaitMove(String username, String fileName) throws IOException {
+        String key = moveKey(username, fileName);
+        while (moving.contains(key)) {
+            try {
+                moveFinished[stripeOf(username)].await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrompido aguardando movimentação de " + fileName);
+            }
+        }
+    }
+    
+    private static String moveKey(String username, String fileName) {
+        return username + '\0' + fileName;
+    }
+    
+    private synchronized void detachIfDrained(Path root, StorageBackend source) {
+        if (!draining.contains(root)) {
+            return;
+        }
+        
+        try {
+            if (source.listUsers().length == 0) {
+                shards.remove(root);
+                draining.remove(root);
+                source.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Erro ao liberar " + root + ": " + e.getMessage());
+        }
+    }
+    
+    // descarta copias antigas que ainda nao foram movidas
+    private void discardStaleCopies(Path owner, String username, String fileName) throws IOException {
+        for (Map.Entry<Path, StorageBackend> e : snapshot().entrySet()) {
+            if (!e.getKey().equals(owner) && e.getValue().exists(username, fileName)) {
+                e.getValue().remove(username, fileName);
+            }
+        }
+    }
+    
+    // dono no anel ou, durante movimentacao, a raiz que ainda tem o objeto
+    private StorageBackend locate(String username, String fileName) {
+        StorageBackend owner = shard(ownerOf(username));
+        if (owner.exists(username, fileName)) {
+            return owner;
+        }
+        
+        for (StorageBackend shard : snapshot().values()) {
+            if (shard.exists(username, fileName)) {
+                return shard;
+            }
+        }
+        return owner;
+    }
+    
+    private Path ownerOf(String username) {
+        TreeMap<Long, Path> current = ring;
+        Map.Entry<Long, Path> entry = current.ceilingEntry(hash(username));
+        return entry != null ? entry.getValue() : current.firstEntry().getValue();
+    }
+    
+    private synchronized StorageBackend shard(Path root) {
+        return shards.get(root);
+    }
+    
+    private synchronized Map<Path, StorageBackend> snapshot() {
+        return new LinkedHashMap<>(shards);
+    }
+    
+    private synchronized void rebuildRing() {
+        TreeMap<Long, Path> newRing = new TreeMap<>();
+        List<Path> active = new ArrayList<>();
+        for (Path root : shards.keySet()) {
+            if (!draining.contains(root)) {
+                active.add(root);
+            }
+        }
+        
+        for (Path root : active) {
+            for (int i = 0; i < VIRTUAL_NODES; i++) {
+                newRing.put(hash(root.toString() + "#" + i), root);
+            }
+        }
+        ring = newRing;
+    }
+    
+    private ReentrantLock lockFor(String username) {
+        return locks[stripeOf(username)];
+    }
+    
+    private static int stripeOf(String username) {
+        return Math.floorMod(username.hashCode(), LOCK_STRIPES);
+    }
+    
+    // primeiros 8 bytes do sha-256
+    private static long hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                .digest(key.getBytes(StandardCharsets.UTF_8));
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (digest[i] & 0xff);
+            }
+            return value;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
\ No newline at end of file
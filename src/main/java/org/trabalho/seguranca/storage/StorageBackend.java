@@ -0,0 +1,41 @@
+package org.trabalho.seguranca.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+
+// interface para backends de armazenamento de objetos criptografados
+public interface StorageBackend extends Closeable {
+    
+    // armazena objeto de um usuario, substituindo versao anterior
+    void store(String username, String fileName, byte[] content) throws IOException;
+    
+    // armazena objeto lido de um canal sem carregar tudo em memoria
+    void storeFrom(String username, String fileName, ReadableByteChannel source, long length)
+            throws IOException;
+    
+    // recupera objeto de um usuario
+    byte[] retrieve(String username, String fileName) throws IOException;
+    
+    // abre canal de leitura sequencial do objeto
+    ReadableByteChannel openRead(String username, String fileName) throws IOException;
+    
+    // tamanho do objeto em bytes
+    long size(String username, String fileName) throws IOException;
+    
+    // lista nomes dos objetos de um usuario
+    String[] list(String username) throws IOException;
+    
+    // remove objeto de um usuario
+    void remove(String username, String fileName) throws IOException;
+    
+    // verifica se objeto existe para um usuario
+    boolean exists(String username, String fileName);
+    
+    // lista usuarios que possuem objetos neste backend
+    String[] listUsers() throws IOException;
+    
+    @Override
+    default void close() throws IOException {
+    }
+}
\ No newline at end of file
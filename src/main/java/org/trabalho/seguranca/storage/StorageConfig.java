@@ -0,0 +1,47 @@
+package org.trabalho.seguranca.storage;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+// raizes de armazenamento configuradas (ex: -Dstorage.roots=/disco1,/disco2)
+public class StorageConfig {
+    
+    public static final String ROOTS_PROPERTY = "storage.roots";
+    public static final String DRAINING_PROPERTY = "storage.roots.draining";
+    public static final String META_PROPERTY = "storage.meta";
+    
+    private static final String DEFAULT_ROOT = "storage";
+    
+    // raizes ativas entre as quais os usuarios sao distribuidos
+    public static List<Path> getRoots() {
+        List<Path> roots = parse(System.getProperty(ROOTS_PROPERTY, DEFAULT_ROOT));
+        if (roots.isEmpty()) {
+            throw new IllegalStateException("Nenhuma raiz de armazenamento configurada");
+        }
+        return roots;
+    }
+    
+    // raizes sendo esvaziadas: apenas leitura ate o rebalanceamento terminar
+    public static List<Path> getDrainingRoots() {
+        return parse(System.getProperty(DRAINING_PROPERTY, ""));
+    }
+    
+    // diretorio de users.json e qr codes; por padrao a primeira raiz, mas deve
+    // ser fixado com -Dstorage.meta quando as raizes puderem ser reordenadas
+    public static Path getMetaRoot() {
+        String meta = System.getProperty(META_PROPERTY, "").trim();
+        return meta.isEmpty() ? getRoots().get(0) : Paths.get(meta);
+    }
+    
+    private static List<Path> parse(String value) {
+        List<Path> roots = new ArrayList<>();
+        for (String root : value.split(",")) {
+            if (!root.trim().isEmpty()) {
+                roots.add(Paths.get(root.trim()));
+            }
+        }
+        return roots;
+    }
+}
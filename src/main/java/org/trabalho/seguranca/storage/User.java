@@ -1,6 +1,8 @@
 package org.trabalho.seguranca.storage;
 
 import org.json.JSONObject;
+import org.trabalho.seguranca.crypto.KdfParameters;
+
 import java.util.Base64;
 
 // representa dados de um usuario
@@ -9,18 +11,37 @@ public class User {
     private byte[] salt;
     private byte[] passwordHash;
     private String totpSecret;
+    // parametros do hash de senha (trocados no rehash apos login)
+    private KdfParameters kdf;
+    // chave dos arquivos cifrada com aes-gcm sob chave derivada da senha;
+    // ausente em usuarios legados, cuja chave e a propria saida do pbkdf2
+    private byte[] wrappedFileKey;
     
     public User(String username, byte[] salt, byte[] passwordHash, String totpSecret) {
+        this(username, salt, passwordHash, totpSecret, KdfParameters.legacy(), null);
+    }
+    
+    public User(String username, byte[] salt, byte[] passwordHash, String totpSecret,
+                KdfParameters kdf, byte[] wrappedFileKey) {
         this.username = username;
         this.salt = salt;
         this.passwordHash = passwordHash;
         this.totpSecret = totpSecret;
+        this.kdf = kdf;
+        this.wrappedFileKey = wrappedFileKey;
     }
     
     public String getUsername() { return username; }
     public byte[] getSalt() { return salt; }
     public byte[] getPasswordHash() { return passwordHash; }
     public String getTotpSecret() { return totpSecret; }
+    public KdfParameters getKdf() { return kdf; }
+    public byte[] getWrappedFileKey() { return wrappedFileKey; }
+    
+    // copia com hash de senha e chave dos arquivos refeitos com novos parametros
+    public User withPasswordHash(byte[] newHash, KdfParameters newKdf, byte[] newWrappedFileKey) {
+        return new User(username, salt, newHash, totpSecret, newKdf, newWrappedFileKey);
+    }
     
     // converte para json
     public JSONObject toJSON() {
@@ -29,6 +50,10 @@ public class User {
         json.put("salt", Base64.getEncoder().encodeToString(salt));
         json.put("passwordHash", Base64.getEncoder().encodeToString(passwordHash));
         json.put("totpSecret", totpSecret);
+        json.put("kdf", kdf.toJSON());
+        if (wrappedFileKey != null) {
+            json.put("wrappedFileKey", Base64.getEncoder().encodeToString(wrappedFileKey));
+        }
         return json;
     }
     
@@ -38,7 +63,9 @@ public class User {
             json.getString("username"),
             Base64.getDecoder().decode(json.getString("salt")),
             Base64.getDecoder().decode(json.getString("passwordHash")),
-            json.getString("totpSecret")
+            json.getString("totpSecret"),
+            KdfParameters.fromJSON(json.optJSONObject("kdf")),
+            json.has("wrappedFileKey") ? Base64.getDecoder().decode(json.getString("wrappedFileKey")) : null
         );
     }
 }
\ No newline at end of file
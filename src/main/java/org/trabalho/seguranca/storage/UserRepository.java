@@ -2,17 +2,22 @@ package org.trabalho.seguranca.storage;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
+import org.trabalho.seguranca.crypto.KdfParameters;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
 
 // gerencia dados dos usuarios em arquivo json
 public class UserRepository {
     
-    private static final Path USERS_FILE = Paths.get("storage", "users.json");
+    private static final String USERS_FILE_NAME = "users.json";
+    private static final Path USERS_FILE = StorageConfig.getMetaRoot().resolve(USERS_FILE_NAME);
+    // o arquivo e reescrito inteiro; acessos concorrentes precisam ser serializados
+    private static final Object FILE_LOCK = new Object();
     
     public UserRepository() throws IOException {
         // cria diretorio storage se nao existir
@@ -20,39 +25,70 @@ public class UserRepository {
         
         // cria arquivo de usuarios se nao existir
         if (!Files.exists(USERS_FILE)) {
+            // contas em outra raiz indicam que as raizes foram reordenadas ou
+            // retiradas; criar um arquivo vazio aqui esconderia todos os usuarios
+            List<Path> roots = new ArrayList<>(StorageConfig.getRoots());
+            roots.addAll(StorageConfig.getDrainingRoots());
+            for (Path root : roots) {
+                Path other = root.resolve(USERS_FILE_NAME);
+                if (!other.equals(USERS_FILE) && Files.exists(other)) {
+                    throw new IOException("Usuários encontrados em " + other + " e não em " + USERS_FILE
+                            + "; defina -D" + StorageConfig.META_PROPERTY + "=" + root);
+                }
+            }
+            
             JSONArray emptyArray = new JSONArray();
             Files.write(USERS_FILE, emptyArray.toString(2).getBytes());
         }
     }
     
     // salva novo usuario
-    public void saveUser(String username, byte[] salt, byte[] passwordHash, String totpSecret) 
-            throws IOException {
-        
-        if (userExists(username)) {
-            throw new IllegalArgumentException("Usuário já existe: " + username);
+    public void saveUser(String username, byte[] salt, byte[] passwordHash, String totpSecret,
+                         KdfParameters kdf, byte[] wrappedFileKey) throws IOException {
+        synchronized (FILE_LOCK) {
+            if (userExists(username)) {
+                throw new IllegalArgumentException("Usuário já existe: " + username);
+            }
+            
+            JSONArray users = loadUsers();
+            User newUser = new User(username, salt, passwordHash, totpSecret, kdf, wrappedFileKey);
+            users.put(newUser.toJSON());
+            
+            writeUsers(users);
+        }
+    }
+    
+    // substitui dados de um usuario existente (ex: rehash da senha)
+    public void updateUser(User user) throws IOException {
+        synchronized (FILE_LOCK) {
+            JSONArray users = loadUsers();
+            
+            for (int i = 0; i < users.length(); i++) {
+                if (users.getJSONObject(i).getString("username").equals(user.getUsername())) {
+                    users.put(i, user.toJSON());
+                    writeUsers(users);
+                    return;
+                }
+            }
+            
+            throw new IllegalArgumentException("Usuário não encontrado: " + user.getUsername());
         }
-        
-        JSONArray users = loadUsers();
-        User newUser = new User(username, salt, passwordHash, totpSecret);
-        users.put(newUser.toJSON());
-        
-        Files.write(USERS_FILE, users.toString(2).getBytes(), 
-                   StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
     }
     
     // busca usuario pelo nome
     public User findUser(String username) throws IOException {
-        JSONArray users = loadUsers();
-        
-        for (int i = 0; i < users.length(); i++) {
-            JSONObject userJson = users.getJSONObject(i);
-            if (userJson.getString("username").equals(username)) {
-                return User.fromJSON(userJson);
+        synchronized (FILE_LOCK) {
+            JSONArray users = loadUsers();
+            
+            for (int i = 0; i < users.length(); i++) {
+                JSONObject userJson = users.getJSONObject(i);
+                if (userJson.getString("username").equals(username)) {
+                    return User.fromJSON(userJson);
+                }
             }
+            
+            return null;
         }
-        
-        return null;
     }
     
     // verifica se usuario existe
@@ -60,6 +96,11 @@ public class UserRepository {
         return findUser(username) != null;
     }
     
+    private void writeUsers(JSONArray users) throws IOException {
+        Files.write(USERS_FILE, users.toString(2).getBytes(), 
+                   StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+    
     // carrega todos os usuários do arquivo
     private JSONArray loadUsers() throws IOException {
         String content = new String(Files.readAllBytes(USERS_FILE));
@@ -0,0 +1,277 @@
+package org.trabalho.seguranca.storage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+// exporta e importa todos os objetos de um usuario em um unico fluxo,
+// repassando o conteudo cifrado sem descriptografar
+//
+// formato do arquivo:
+//   magic (8) | versao (int) | len usuario (int) | usuario
+//   | entradas: [1 (byte) | len nome (int) | nome | tamanho (long) | dados | crc32c (int)]...
+//   | 0 (byte) | quantidade (int) | magic final (8)
+//
+// cada entrada traz o proprio cabecalho para que exportacao e importacao usem
+// memoria constante mesmo com muitos arquivos pequenos; o crc detecta arquivos
+// truncados ou corrompidos e a autenticidade do conteudo continua garantida
+// pela tag gcm de cada arquivo
+public class VaultArchive {
+    
+    private static final byte[] MAGIC = "SNVAULT1".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] END_MAGIC = "SNVEND01".getBytes(StandardCharsets.US_ASCII);
+    private static final int FORMAT_VERSION = 1;
+    private static final byte ENTRY = 1;
+    private static final byte END_OF_ENTRIES = 0;
+    
+    // buffer unico e fixo: memoria constante independente do tamanho do cofre
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    
+    private final StorageBackend backend;
+    
+    public VaultArchive(StorageBackend backend) {
+        this.backend = backend;
+    }
+    
+    // grava todos os arquivos do usuario no canal e retorna quantos foram exportados
+    public int export(String username, WritableByteChannel out) throws IOException {
+        writeFully(out, encodeHeader(username));
+        
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        int count = 0;
+        for (String name : backend.list(username)) {
+            long remaining = backend.size(username, name);
+            writeFully(out, encodeEntryHeader(name, remaining));
+            
+            CRC32C crc = new CRC32C();
+            try (ReadableByteChannel in = backend.openRead(username, name)) {
+                while (remaining > 0) {
+                    buffer.clear();
+                    if (remaining < buffer.capacity()) {
+                        buffer.limit((int) remaining);
+                    }
+                    if (in.read(buffer) < 0) {
+                        throw new IOException("Arquivo alterado durante exportação: " + name);
+                    }
+                    buffer.flip();
+                    remaining -= buffer.remaining();
+                    
+                    buffer.mark();
+                    crc.update(buffer);
+                    buffer.reset();
+                    writeFully(out, buffer);
+                }
+            }
+            
+            ByteBuffer trailer = ByteBuffer.allocate(4);
+            trailer.putInt((int) crc.getValue()).flip();
+            writeFully(out, trailer);
+            count++;
+        }
+        
+        ByteBuffer end = ByteBuffer.allocate(1 + 4 + END_MAGIC.length);
+        end.put(END_OF_ENTRIES).putInt(count).put(END_MAGIC).flip();
+        writeFully(out, end);
+        return count;
+    }
+    
+    // le arquivo exportado verificando cada objeto enquanto grava; objetos ja
+    // existentes nao sao sobrescritos e qualquer falha desfaz a importacao
+    public int importTo(String username, ReadableByteChannel in) throws IOException {
+        byte[] magic = readBytes(in, MAGIC.length);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Arquivo de exportação inválido");
+        }
+        
+        int version = readInt(in);
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Versão de exportação não suportada: " + version);
+        }
+        
+        // usuario de origem e apenas informativo
+        readString(in);
+        
+        // nomes importados vao para um diario em disco, nao para o heap, para
+        // desfazer a importacao sem limitar a quantidade de arquivos
+        Path journal = Files.createTempFile("importacao-", ".tmp");
+        try (DataOutputStream imported = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(journal)))) {
+            try {
+                return importEntries(username, in, imported);
+            } catch (IOException e) {
+                imported.flush();
+                rollback(username, journal);
+                throw e;
+            }
+        } finally {
+            Files.deleteIfExists(journal);
+        }
+    }
+    
+    private int importEntries(String username, ReadableByteChannel in, DataOutputStream imported)
+            throws IOException {
+        int total = 0;
+        while (true) {
+            byte marker = readBytes(in, 1)[0];
+            if (marker == END_OF_ENTRIES) {
+                break;
+            }
+            if (marker != ENTRY) {
+                throw new IOException("Entrada inválida no arquivo de exportação");
+            }
+            
+            String name = readString(in);
+            if (name.isEmpty() || name.contains("/") || name.contains("\\")
+                    || name.equals(".") || name.equals("..")) {
+                throw new IOException("Nome de arquivo inválido: " + name);
+            }
+            long size = readLong(in);
+            if (size < 0) {
+                throw new IOException("Tamanho inválido: " + name);
+            }
+            // tambem rejeita nomes repetidos no arquivo, ja importados acima
+            if (backend.exists(username, name)) {
+                throw new IOException("Arquivo já existe: " + name);
+            }
+            
+            imported.writeUTF(name);
+            CheckedChannel checked = new CheckedChannel(in, size);
+            backend.storeFrom(username, name, checked, size);
+            if (checked.remaining > 0 || readInt(in) != (int) checked.crc.getValue()) {
+                throw new IOException("Arquivo corrompido na importação: " + name);
+            }
+            total++;
+        }
+        
+        if (readInt(in) != total || !Arrays.equals(readBytes(in, END_MAGIC.length), END_MAGIC)) {
+            throw new IOException("Arquivo de exportação truncado");
+        }
+        return total;
+    }
+    
+    // desfaz importacao parcial para o usuario poder tentar de novo
+    private void rollback(String username, Path journal) throws IOException {
+        try (DataInputStream imported = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(journal)))) {
+            while (true) {
+                String name;
+                try {
+                    name = imported.readUTF();
+                } catch (EOFException e) {
+                    return;
+                }
+                if (backend.exists(username, name)) {
+                    backend.remove(username, name);
+                }
+            }
+        }
+    }
+    
+    private static ByteBuffer encodeHeader(String username) {
+        byte[] user = username.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer header = ByteBuffer.allocate(MAGIC.length + 4 + 4 + user.length);
+        header.put(MAGIC).putInt(FORMAT_VERSION).putInt(user.length).put(user).flip();
+        return header;
+    }
+    
+    private static ByteBuffer encodeEntryHeader(String name, long size) {
+        byte[] encoded = name.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer header = ByteBuffer.allocate(1 + 4 + encoded.length + 8);
+        header.put(ENTRY).putInt(encoded.length).put(encoded).putLong(size).flip();
+        return header;
+    }
+    
+    private static void writeFully(WritableByteChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+    
+    private static byte[] readBytes(ReadableByteChannel in, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer) < 0) {
+                throw new IOException("Arquivo de exportação truncado");
+            }
+        }
+        return buffer.array();
+    }
+    
+    private static int readInt(ReadableByteChannel in) throws IOException {
+        return ByteBuffer.wrap(readBytes(in, 4)).getInt();
+    }
+    
+    private static long readLong(ReadableByteChannel in) throws IOException {
+        return ByteBuffer.wrap(readBytes(in, 8)).getLong();
+    }
+    
+    private static String readString(ReadableByteChannel in) throws IOException {
+        int length = readInt(in);
+        if (length < 0 || length > 4096) {
+            throw new IOException("Nome inválido no arquivo de exportação");
+        }
+        return new String(readBytes(in, length), StandardCharsets.UTF_8);
+    }
+    
+    // limita a leitura ao tamanho do objeto e calcula o crc do que passa
+    private static class CheckedChannel implements ReadableByteChannel {
+        final ReadableByteChannel source;
+        final CRC32C crc = new CRC32C();
+        long remaining;
+        
+        CheckedChannel(ReadableByteChannel source, long length) {
+            this.source = source;
+            this.remaining = length;
+        }
+        
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            if (remaining == 0) {
+                return -1;
+            }
+            
+            int start = dst.position();
+            int limit = dst.limit();
+            if (dst.remaining() > remaining) {
+                dst.limit(start + (int) remaining);
+            }
+            
+            int read;
+            try {
+                read = source.read(dst);
+            } finally {
+                dst.limit(limit);
+            }
+            if (read <= 0) {
+                return read;
+            }
+            
+            ByteBuffer view = dst.duplicate();
+            view.position(start).limit(start + read);
+            crc.update(view);
+            remaining -= read;
+            return read;
+        }
+        
+        @Override
+        public boolean isOpen() {
+            return source.isOpen();
+        }
+        
+        @Override
+        public void close() {
+            // o canal de origem pertence ao chamador
+        }
+    }
+}
\ No newline at end of file